@@ -18,7 +18,6 @@
  */
 package spin;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 /**
@@ -171,6 +170,8 @@ public class Invocation {
 	/**
 	 * Evaluate the return value (or a possibly thrown <code>Throwable</code>)
 	 * by invoking to method with the arguments on the wrapped object.
+	 * 
+	 * @see Invoker#get(Method)
 	 */
 	public void evaluate() {
 		if (evaluated) {
@@ -178,9 +179,7 @@ public class Invocation {
 		}
 
 		try {
-			result = method.invoke(object, args);
-		} catch (InvocationTargetException ex) {
-			this.throwable = ex.getTargetException();
+			result = Invoker.get(method).invoke(object, args);
 		} catch (Throwable throwable) {
 			this.throwable = throwable;
 		}
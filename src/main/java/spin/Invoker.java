@@ -0,0 +1,260 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An invoker of a single method - used by {@link Invocation}s to invoke
+ * methods without reflective overhead. <br>
+ * Each method is resolved once into a <code>MethodHandle</code>, adapted to
+ * take the target object and an array of arguments. Methods which cannot be
+ * accessed through a handle are invoked reflectively instead. Either way
+ * illegal arguments are reported with an
+ * <code>IllegalArgumentException</code> as by
+ * {@link Method#invoke(Object, Object[])}.
+ * 
+ * @see #get(Method)
+ */
+public abstract class Invoker {
+
+	/**
+	 * The resolved invokers for each class declaring methods.
+	 */
+	private static final ClassValue<ConcurrentMap<Method, Invoker>> invokers = new ClassValue<ConcurrentMap<Method, Invoker>>() {
+		protected ConcurrentMap<Method, Invoker> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<Method, Invoker>();
+		}
+	};
+
+	/**
+	 * Invoke the method on the given object.
+	 * 
+	 * @param object
+	 *            object to invoke method on
+	 * @param args
+	 *            arguments of the invocation, may be <code>null</code> for
+	 *            methods without parameters
+	 * @return result of the invocation
+	 * @throws Throwable
+	 *             the throwable thrown by the method
+	 */
+	public abstract Object invoke(Object object, Object[] args)
+			throws Throwable;
+
+	/**
+	 * Get the invoker for the given method.
+	 * 
+	 * @param method
+	 *            method to get invoker for
+	 * @return invoker
+	 */
+	public static Invoker get(Method method) {
+		ConcurrentMap<Method, Invoker> declared = invokers.get(method
+				.getDeclaringClass());
+
+		Invoker invoker = declared.get(method);
+		if (invoker == null) {
+			invoker = resolve(method);
+
+			declared.putIfAbsent(method, invoker);
+		}
+		return invoker;
+	}
+
+	/**
+	 * Resolve an invoker for the given method.
+	 * 
+	 * @param method
+	 *            method to resolve invoker for
+	 * @return invoker
+	 */
+	private static Invoker resolve(Method method) {
+		try {
+			// don't change the accessibility of the shared method
+			method = method.getDeclaringClass().getDeclaredMethod(
+					method.getName(), method.getParameterTypes());
+		} catch (Exception ex) {
+			return new ReflectiveInvoker(method);
+		}
+
+		MethodHandle handle;
+		try {
+			handle = unreflect(method);
+		} catch (Exception ex) {
+			return new ReflectiveInvoker(method);
+		}
+
+		if (Modifier.isStatic(method.getModifiers())) {
+			handle = MethodHandles.dropArguments(handle, 0, Object.class);
+		}
+		handle = handle.asFixedArity();
+		handle = handle.asType(handle.type().generic());
+		handle = handle.asSpreader(Object[].class,
+				method.getParameterTypes().length);
+
+		return new HandleInvoker(method, handle);
+	}
+
+	/**
+	 * Get a method handle for the given method.
+	 * 
+	 * @param method
+	 *            private copy of the method to get handle for
+	 * @return handle
+	 * @throws Exception
+	 *             if method is not accessible
+	 */
+	private static MethodHandle unreflect(Method method) throws Exception {
+		try {
+			return MethodHandles.publicLookup().unreflect(method);
+		} catch (IllegalAccessException ex) {
+			// e.g. a public method of a non-public class
+			method.setAccessible(true);
+
+			return MethodHandles.lookup().unreflect(method);
+		}
+	}
+
+	/**
+	 * Invoker with a method handle.
+	 */
+	private static class HandleInvoker extends Invoker {
+
+		private final Method method;
+
+		private final MethodHandle handle;
+
+		public HandleInvoker(Method method, MethodHandle handle) {
+			this.method = method;
+			this.handle = handle;
+		}
+
+		public Object invoke(Object object, Object[] args) throws Throwable {
+			try {
+				return (Object) handle.invokeExact(object, args);
+			} catch (ClassCastException ex) {
+				checkArguments(object, args);
+				throw ex;
+			} catch (NullPointerException ex) {
+				checkArguments(object, args);
+				throw ex;
+			}
+		}
+
+		/**
+		 * Check the arguments after an exception, as the handle reports
+		 * illegal arguments differently than reflection.
+		 * 
+		 * @throws IllegalArgumentException
+		 *             if the arguments are illegal
+		 */
+		private void checkArguments(Object object, Object[] args) {
+			if (object != null && !Modifier.isStatic(method.getModifiers())
+					&& !method.getDeclaringClass().isInstance(object)) {
+				throw new IllegalArgumentException(
+						"object is not an instance of declaring class");
+			}
+
+			Class<?>[] types = method.getParameterTypes();
+			int length = args == null ? 0 : args.length;
+			if (length != types.length) {
+				throw new IllegalArgumentException("wrong number of arguments");
+			}
+			for (int a = 0; a < length; a++) {
+				if (!isAssignable(types[a], args[a])) {
+					throw new IllegalArgumentException("argument type mismatch");
+				}
+			}
+		}
+
+		/**
+		 * Test if the given argument can be passed as the given type,
+		 * including unboxing and widening of primitives.
+		 */
+		private static boolean isAssignable(Class<?> type, Object arg) {
+			if (!type.isPrimitive()) {
+				return arg == null || type.isInstance(arg);
+			}
+			if (arg == null) {
+				return false;
+			}
+
+			Class<?> wrapper = arg.getClass();
+			if (type == Boolean.TYPE) {
+				return wrapper == Boolean.class;
+			}
+			if (type == Character.TYPE) {
+				return wrapper == Character.class;
+			}
+			// primitives in order of widening
+			String widening = "BSIJFD";
+			int to = widening.indexOf(code(type));
+			if (wrapper == Character.class) {
+				// char widens to int and beyond
+				return to >= widening.indexOf('I');
+			}
+			int from = widening.indexOf(code(wrapper));
+			return from != -1 && from <= to;
+		}
+
+		private static char code(Class<?> type) {
+			if (type == Byte.class || type == Byte.TYPE) {
+				return 'B';
+			} else if (type == Short.class || type == Short.TYPE) {
+				return 'S';
+			} else if (type == Integer.class || type == Integer.TYPE) {
+				return 'I';
+			} else if (type == Long.class || type == Long.TYPE) {
+				return 'J';
+			} else if (type == Float.class || type == Float.TYPE) {
+				return 'F';
+			} else if (type == Double.class || type == Double.TYPE) {
+				return 'D';
+			}
+			return '?';
+		}
+	}
+
+	/**
+	 * Invoker with reflection.
+	 */
+	private static class ReflectiveInvoker extends Invoker {
+
+		private final Method method;
+
+		public ReflectiveInvoker(Method method) {
+			this.method = method;
+		}
+
+		public Object invoke(Object object, Object[] args) throws Throwable {
+			try {
+				return method.invoke(object, args);
+			} catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A table of values of methods as declared by annotations. <br>
+ * Values are resolved once per class into an immutable table, thus looking up
+ * the value of a method does not allocate. A method gets the value declared
+ * on itself, else the value of its declaration in an implemented interface,
+ * else the value declared on its class - thus methods of classes as passed by
+ * CGLib resolve to the same values as the methods of their interfaces.
+ * 
+ * @param <V>
+ *            type of values
+ */
+public abstract class MethodTable<V> {
+
+	/**
+	 * Tables of classes, containing methods with values only.
+	 */
+	private final ClassValue<Map<Method, V>> tables = new ClassValue<Map<Method, V>>() {
+		protected Map<Method, V> computeValue(Class<?> clazz) {
+			return createTable(clazz);
+		}
+	};
+
+	/**
+	 * Get the value of the given method.
+	 * 
+	 * @param method
+	 *            method to get value for
+	 * @return value or <code>null</code> if none is declared
+	 */
+	public V get(Method method) {
+		return tables.get(method.getDeclaringClass()).get(method);
+	}
+
+	/**
+	 * Get the value declared by annotations on the given element.
+	 * 
+	 * @param method
+	 *            method to get value for
+	 * @param element
+	 *            the method itself or a class declaring it
+	 * @return value or <code>null</code> if none is declared
+	 */
+	protected abstract V getValue(Method method, AnnotatedElement element);
+
+	private Map<Method, V> createTable(Class<?> clazz) {
+		Map<Method, V> table = new HashMap<Method, V>();
+
+		Method[] methods = clazz.getDeclaredMethods();
+		for (int m = 0; m < methods.length; m++) {
+			V value = getValue(methods[m], methods[m]);
+			if (value == null && !clazz.isInterface()) {
+				value = getInterfaceValue(clazz, methods[m]);
+			}
+			if (value == null) {
+				value = getValue(methods[m], clazz);
+			}
+
+			if (value != null) {
+				table.put(methods[m], value);
+			}
+		}
+
+		if (table.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(table);
+	}
+
+	/**
+	 * Get the value of the declaration of the given method of a class in an
+	 * interface implemented by that class.
+	 */
+	private V getInterfaceValue(Class<?> clazz, Method method) {
+		if (!Modifier.isPublic(method.getModifiers())
+				|| Modifier.isStatic(method.getModifiers())) {
+			return null;
+		}
+
+		for (Class<?> type = clazz; type != null; type = type.getSuperclass()) {
+			Class<?>[] interfaces = type.getInterfaces();
+			for (int i = 0; i < interfaces.length; i++) {
+				try {
+					V value = get(interfaces[i].getMethod(method.getName(),
+							method.getParameterTypes()));
+					if (value != null) {
+						return value;
+					}
+				} catch (NoSuchMethodException notDeclared) {
+				}
+			}
+		}
+		return null;
+	}
+}
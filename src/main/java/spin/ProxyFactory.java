@@ -19,6 +19,9 @@
 package spin;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * A factory of proxies which intercept invocations, using Evaluators to
@@ -29,16 +32,70 @@ import java.lang.reflect.Method;
 public abstract class ProxyFactory {
 
 	/**
-	 * The equals method of class <code>object</code>.
+	 * Kinds of methods evaluated on the calling thread.
 	 */
-	private static final Method equalsMethod;
-	static {
-		try {
-			equalsMethod = Object.class.getMethod("equals",
-					new Class[] { Object.class });
-		} catch (Exception ex) {
-			throw new Error(ex);
+	private static enum Local {
+		EQUALS, HASH_CODE, TO_STRING, METHOD
+	}
+
+	/**
+	 * The methods of <code>Object</code> evaluated on the calling thread.
+	 */
+	private static final Map<Method, Local> objectMethods = createObjectMethods();
+
+	/**
+	 * Methods evaluated on the calling thread, replaced on each change so a
+	 * single lookup per invocation does not need to lock.
+	 */
+	private volatile Map<Method, Local> localMethods = objectMethods;
+
+	/**
+	 * Add a method to be evaluated locally on the calling thread, bypassing
+	 * the evaluator.
+	 * 
+	 * @param method
+	 *            method to evaluate locally
+	 */
+	public synchronized void addLocalMethod(Method method) {
+		if (method == null) {
+			throw new IllegalArgumentException("method must not be null");
 		}
+
+		if (localMethods.containsKey(method)) {
+			return;
+		}
+
+		Map<Method, Local> methods = new HashMap<Method, Local>(localMethods);
+		methods.put(method, Local.METHOD);
+		localMethods = Collections.unmodifiableMap(methods);
+	}
+
+	/**
+	 * Remove a method from being evaluated locally.
+	 * 
+	 * @param method
+	 *            method to remove
+	 */
+	public synchronized void removeLocalMethod(Method method) {
+		if (localMethods.get(method) != Local.METHOD) {
+			return;
+		}
+
+		Map<Method, Local> methods = new HashMap<Method, Local>(localMethods);
+		methods.remove(method);
+		localMethods = Collections.unmodifiableMap(methods);
+	}
+
+	/**
+	 * Test if the given method is evaluated locally on the calling thread.
+	 * 
+	 * @param method
+	 *            method to test
+	 * @return <code>true</code> if local
+	 * @see #addLocalMethod(Method)
+	 */
+	protected boolean isLocal(Method method) {
+		return localMethods.get(method) == Local.METHOD;
 	}
 
 	/**
@@ -76,7 +133,10 @@ public abstract class ProxyFactory {
 	protected abstract boolean areProxyEqual(Object proxy1, Object proxy2);
 
 	/**
-	 * Evaluate the given invocation with the given evaluator.
+	 * Evaluate the given invocation with the given evaluator. <br>
+	 * The methods <code>equals()</code>, <code>hashCode()</code> and
+	 * <code>toString()</code> are evaluated on the calling thread, all other
+	 * methods are evaluated according to their route.
 	 * 
 	 * @param evaluator
 	 *            evaluator to evaluate with
@@ -86,16 +146,90 @@ public abstract class ProxyFactory {
 	 *            the invocation to evaluate
 	 * @return result of evaluation
 	 * @throws Throwable
+	 * @see #evaluate(Evaluator, Invocation)
 	 */
 	protected Object evaluteInvocation(Evaluator evaluator, Object proxy,
 			Invocation invocation) throws Throwable {
-		if (equalsMethod.equals(invocation.getMethod())) {
-			return new Boolean(isProxy(invocation.getArguments()[0])
-					&& areProxyEqual(proxy, invocation.getArguments()[0]));
+		Local local = localMethods.get(invocation.getMethod());
+		if (local == null) {
+			evaluateRoute(evaluator, invocation);
 		} else {
+			switch (local) {
+			case EQUALS:
+				Object other = invocation.getArguments()[0];
+				return Boolean.valueOf(isProxy(other)
+						&& areProxyEqual(proxy, other));
+			case HASH_CODE:
+				return Integer.valueOf(invocation.getObject().hashCode());
+			case TO_STRING:
+				return invocation.getObject().toString();
+			default:
+				invocation.evaluate();
+			}
+		}
+
+		return invocation.resultOrThrow();
+	}
+
+	/**
+	 * Evaluate the given invocation according to the route of its method.
+	 * 
+	 * @param evaluator
+	 *            evaluator of the proxy
+	 * @param invocation
+	 *            the invocation to evaluate
+	 * @throws Throwable
+	 * @see #isLocal(Method)
+	 * @see Route#of(Method)
+	 */
+	protected void evaluate(Evaluator evaluator, Invocation invocation)
+			throws Throwable {
+		if (isLocal(invocation.getMethod())) {
+			invocation.evaluate();
+		} else {
+			evaluateRoute(evaluator, invocation);
+		}
+	}
+
+	/**
+	 * Evaluate the given invocation according to the route of its method,
+	 * which is not local.
+	 */
+	private void evaluateRoute(Evaluator evaluator, Invocation invocation)
+			throws Throwable {
+		switch (Route.of(invocation.getMethod())) {
+		case INLINE:
+			invocation.evaluate();
+			break;
+		case OFF:
+			Spin.getDefaultOffEvaluator().evaluate(invocation);
+			break;
+		case OVER:
+			Spin.getDefaultOverEvaluator().evaluate(invocation);
+			break;
+		case ASYNC:
+			Spin.getDefaultAsyncEvaluator().evaluate(invocation);
+			break;
+		default:
 			evaluator.evaluate(invocation);
+		}
+	}
 
-			return invocation.resultOrThrow();
+	/**
+	 * Resolve the methods of <code>Object</code> once.
+	 */
+	private static Map<Method, Local> createObjectMethods() {
+		Map<Method, Local> methods = new HashMap<Method, Local>();
+		try {
+			methods.put(Object.class.getMethod("equals",
+					new Class[] { Object.class }), Local.EQUALS);
+			methods.put(Object.class.getMethod("hashCode", new Class[0]),
+					Local.HASH_CODE);
+			methods.put(Object.class.getMethod("toString", new Class[0]),
+					Local.TO_STRING);
+		} catch (NoSuchMethodException ex) {
+			throw new Error(ex);
 		}
+		return Collections.unmodifiableMap(methods);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+
+import spin.annotation.Async;
+import spin.annotation.Inline;
+import spin.annotation.Off;
+import spin.annotation.Over;
+
+/**
+ * The route of invocations of a method as declared by annotations. <br>
+ * Routes are resolved once per class into an immutable table, thus looking up
+ * the route of a method does not allocate. Methods of classes get the route of
+ * their declarations in interfaces.
+ * 
+ * @see ProxyFactory#evaluate(Evaluator, Invocation)
+ */
+public enum Route {
+
+	/**
+	 * Evaluate with the evaluator of the proxy.
+	 */
+	DEFAULT,
+
+	/**
+	 * Evaluate on the calling thread.
+	 * 
+	 * @see Inline
+	 */
+	INLINE,
+
+	/**
+	 * Evaluate with the default evaluator for spin-off.
+	 * 
+	 * @see Off
+	 */
+	OFF,
+
+	/**
+	 * Evaluate with the default evaluator for spin-over.
+	 * 
+	 * @see Over
+	 */
+	OVER,
+
+	/**
+	 * Evaluate with the default asynchronous evaluator.
+	 * 
+	 * @see Async
+	 */
+	ASYNC;
+
+	/**
+	 * Routing tables of classes, containing non-default routes only.
+	 */
+	private static final MethodTable<Route> tables = new MethodTable<Route>() {
+		protected Route getValue(Method method, AnnotatedElement element) {
+			return getAnnotatedRoute(element);
+		}
+	};
+
+	/**
+	 * Get the route of the given method.
+	 * 
+	 * @param method
+	 *            method to get route for
+	 * @return route
+	 */
+	public static Route of(Method method) {
+		Route route = tables.get(method);
+		if (route == null) {
+			return DEFAULT;
+		}
+		return route;
+	}
+
+	/**
+	 * Get the route declared by annotations on the given element - if more
+	 * than one annotation is present, the first of {@link Inline},
+	 * {@link Off}, {@link Over} and {@link Async} wins.
+	 * 
+	 * @return route or <code>null</code> if not annotated
+	 */
+	private static Route getAnnotatedRoute(AnnotatedElement element) {
+		if (element.isAnnotationPresent(Inline.class)) {
+			return INLINE;
+		} else if (element.isAnnotationPresent(Off.class)) {
+			return OFF;
+		} else if (element.isAnnotationPresent(Over.class)) {
+			return OVER;
+		} else if (element.isAnnotationPresent(Async.class)) {
+			return ASYNC;
+		}
+		return null;
+	}
+}
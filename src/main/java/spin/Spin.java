@@ -18,9 +18,12 @@
  */
 package spin;
 
+import java.lang.ref.WeakReference;
+
+import spin.off.FireAndForgetSpinOffEvaluator;
 import spin.off.SpinOffEvaluator;
 import spin.over.SpinOverEvaluator;
-import spin.proxy.JDKProxyFactory;
+import spin.proxy.StaticProxyFactory;
 
 /**
  * <p>
@@ -58,17 +61,26 @@ import spin.proxy.JDKProxyFactory;
  * @see #off(Object)
  * @see #over(Object)
  * @see spin.ProxyFactory
+ * @see spin.Route
  * @see spin.off.SpinOffEvaluator
  * @see spin.over.SpinOverEvaluator
  */
 public class Spin {
 
-	private static ProxyFactory defaultProxyFactory = new JDKProxyFactory();
+	private static ProxyFactory defaultProxyFactory = new StaticProxyFactory();
 
 	private static Evaluator defaultOffEvaluator = new SpinOffEvaluator();
 
 	private static Evaluator defaultOverEvaluator = new SpinOverEvaluator();
 
+	private static Evaluator defaultAsyncEvaluator = new FireAndForgetSpinOffEvaluator(
+			true);
+
+	/**
+	 * Canonical proxies of wrapped objects.
+	 */
+	private static final WeakIdentityMap<Object, CanonicalProxy> canonicalProxies = new WeakIdentityMap<Object, CanonicalProxy>();
+
 	private Object proxy;
 
 	/**
@@ -84,7 +96,10 @@ public class Spin {
 	}
 
 	/**
-	 * Create a <em>Spin</em> wrapper for the given object.
+	 * Create a <em>Spin</em> wrapper for the given object. <br>
+	 * As long as a previously created proxy for the same object, factory and
+	 * evaluator is still referenced, this proxy is reused - thus repeated
+	 * wrapping of an object yields the identical proxy.
 	 * 
 	 * @param object
 	 *            object to wrap
@@ -104,7 +119,76 @@ public class Spin {
 			throw new IllegalArgumentException("evaluator must not be null");
 		}
 
-		proxy = proxyFactory.createProxy(object, evaluator);
+		proxy = getCanonicalProxy(object, proxyFactory, evaluator);
+	}
+
+	/**
+	 * Get the canonical proxy for the given object, factory and evaluator.
+	 * 
+	 * @param object
+	 *            object to wrap
+	 * @param proxyFactory
+	 *            factory for a proxy
+	 * @param evaluator
+	 *            evaluator of invocations on the given object
+	 * @return the proxy
+	 */
+	private static Object getCanonicalProxy(Object object,
+			ProxyFactory proxyFactory, Evaluator evaluator) {
+		synchronized (canonicalProxies) {
+			Object proxy = find(object, proxyFactory, evaluator);
+			if (proxy != null) {
+				return proxy;
+			}
+		}
+
+		// don't block others while creating
+		Object proxy = proxyFactory.createProxy(object, evaluator);
+
+		synchronized (canonicalProxies) {
+			Object existing = find(object, proxyFactory, evaluator);
+			if (existing != null) {
+				return existing;
+			}
+
+			canonicalProxies.put(object, new CanonicalProxy(proxyFactory,
+					evaluator, proxy, canonicalProxies.get(object)));
+		}
+		return proxy;
+	}
+
+	/**
+	 * Find a canonical proxy, removing all collected proxies on the way.
+	 */
+	private static Object find(Object object, ProxyFactory proxyFactory,
+			Evaluator evaluator) {
+		Object found = null;
+
+		CanonicalProxy previous = null;
+		CanonicalProxy current = canonicalProxies.get(object);
+		while (current != null) {
+			Object proxy = current.proxy.get();
+			if (proxy == null) {
+				if (previous == null) {
+					if (current.next == null) {
+						canonicalProxies.remove(object);
+					} else {
+						canonicalProxies.put(object, current.next);
+					}
+				} else {
+					previous.next = current.next;
+				}
+			} else {
+				if (current.proxyFactory == proxyFactory
+						&& current.evaluator == evaluator) {
+					found = proxy;
+				}
+				previous = current;
+			}
+			current = current.next;
+		}
+
+		return found;
 	}
 
 	/**
@@ -192,6 +276,20 @@ public class Spin {
 		defaultOverEvaluator = evaluator;
 	}
 
+	/**
+	 * Set the default evaluator for asynchronous evaluation.
+	 * 
+	 * @param evaluator
+	 *            evaluator for asynchronous evaluation
+	 * @see spin.annotation.Async
+	 */
+	public static void setDefaultAsyncEvaluator(Evaluator evaluator) {
+		if (evaluator == null) {
+			throw new IllegalArgumentException("evaluator must not be null");
+		}
+		defaultAsyncEvaluator = evaluator;
+	}
+
 	/**
 	 * Get the default proxy factory.
 	 * 
@@ -218,4 +316,40 @@ public class Spin {
 	public static Evaluator getDefaultOverEvaluator() {
 		return defaultOverEvaluator;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Get the default evaluator for asynchronous evaluation, initially
+	 * spinning-off without waiting for void methods invoked on the EDT.
+	 * 
+	 * @see spin.off.FireAndForgetSpinOffEvaluator
+	 * 
+	 * @return evaluator for asynchronous evaluation
+	 * @see spin.annotation.Async
+	 */
+	public static Evaluator getDefaultAsyncEvaluator() {
+		return defaultAsyncEvaluator;
+	}
+
+	/**
+	 * A canonical proxy - the proxy is referenced weakly only, since it
+	 * references the wrapped object strongly.
+	 */
+	private static class CanonicalProxy {
+
+		private ProxyFactory proxyFactory;
+
+		private Evaluator evaluator;
+
+		private WeakReference<Object> proxy;
+
+		private CanonicalProxy next;
+
+		public CanonicalProxy(ProxyFactory proxyFactory, Evaluator evaluator,
+				Object proxy, CanonicalProxy next) {
+			this.proxyFactory = proxyFactory;
+			this.evaluator = evaluator;
+			this.proxy = new WeakReference<Object>(proxy);
+			this.next = next;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map with weakly referenced keys compared by identity - an entry is
+ * removed once its key is garbage collected. <br>
+ * Used by <em>Spin</em> to associate state with wrapped objects without
+ * keeping them from being collected, e.g. GUI components. Values must not
+ * strongly reference their keys or these will never be collected. All methods
+ * are synchronized.
+ * 
+ * @param <K>
+ *            type of keys
+ * @param <V>
+ *            type of values
+ */
+public class WeakIdentityMap<K, V> {
+
+	/**
+	 * Queue of references to collected keys.
+	 */
+	private ReferenceQueue<K> queue = new ReferenceQueue<K>();
+
+	/**
+	 * The entries.
+	 */
+	private Map<IdentityReference<K>, V> entries = new HashMap<IdentityReference<K>, V>();
+
+	/**
+	 * Get the value for the given key.
+	 * 
+	 * @param key
+	 *            key to get value for
+	 * @return value or <code>null</code> if none is present
+	 */
+	public synchronized V get(K key) {
+		expunge();
+
+		return entries.get(new IdentityReference<K>(key, null));
+	}
+
+	/**
+	 * Put a value for the given key.
+	 * 
+	 * @param key
+	 *            key to put value for
+	 * @param value
+	 *            the value
+	 * @return previous value or <code>null</code> if none was present
+	 */
+	public synchronized V put(K key, V value) {
+		if (key == null) {
+			throw new IllegalArgumentException("key must not be null");
+		}
+
+		expunge();
+
+		return entries.put(new IdentityReference<K>(key, queue), value);
+	}
+
+	/**
+	 * Remove the value for the given key.
+	 * 
+	 * @param key
+	 *            key to remove value for
+	 * @return removed value or <code>null</code> if none was present
+	 */
+	public synchronized V remove(K key) {
+		expunge();
+
+		return entries.remove(new IdentityReference<K>(key, null));
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+
+		while (queue.poll() != null) {
+		}
+	}
+
+	/**
+	 * Get the number of entries whose keys are not yet collected.
+	 * 
+	 * @return number of entries
+	 */
+	public synchronized int size() {
+		expunge();
+
+		return entries.size();
+	}
+
+	/**
+	 * Remove all entries whose keys were collected.
+	 */
+	private void expunge() {
+		Reference<? extends K> reference;
+		while ((reference = queue.poll()) != null) {
+			entries.remove(reference);
+		}
+	}
+
+	/**
+	 * A weak reference to a key, hashed and compared by identity.
+	 */
+	private static class IdentityReference<K> extends WeakReference<K> {
+
+		private int hash;
+
+		public IdentityReference(K key, ReferenceQueue<K> queue) {
+			super(key, queue);
+
+			this.hash = System.identityHashCode(key);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+			if (!(object instanceof IdentityReference)) {
+				return false;
+			}
+
+			Object key = get();
+			return key != null && key == ((IdentityReference<?>) object).get();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Invocations of an annotated method are evaluated asynchronously with the
+ * default asynchronous evaluator, regardless of the evaluator of the proxy.
+ * Initially the method is spun-off and the EDT does not wait for the
+ * evaluation, thus the method should not return a value - methods returning
+ * a value and invocations from other threads still wait, in order with other
+ * invocations on the same object.
+ * <br>
+ * If placed on a type, this annotation applies to all methods declared by the
+ * type that are not annotated themselves.
+ * 
+ * @see spin.Spin#getDefaultAsyncEvaluator()
+ * @see spin.Route
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target( { ElementType.METHOD, ElementType.TYPE })
+public @interface Async {
+}
@@ -0,0 +1,48 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Results of an annotated method are cached for the given milliseconds, i.e.
+ * the method should be an idempotent read.
+ * <br>
+ * If placed on a type, this annotation applies to all methods declared by the
+ * type that are not annotated themselves.
+ * 
+ * @see spin.off.CachingSpinOffEvaluator
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target( { ElementType.METHOD, ElementType.TYPE })
+public @interface Cached {
+
+	/**
+	 * The milliseconds to cache results.
+	 * 
+	 * @return milliseconds, <code>0</code> to cache until evicted or
+	 *         invalidated
+	 */
+	long value() default 0;
+}
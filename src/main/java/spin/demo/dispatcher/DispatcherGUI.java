@@ -43,6 +43,7 @@ import spin.off.AWTReflectDispatcherFactory;
 import spin.off.Dispatcher;
 import spin.off.DispatcherFactory;
 import spin.off.InternalOptionPaneDispatcherFactory;
+import spin.off.SecondaryLoopDispatcherFactory;
 import spin.off.SpinOffEvaluator;
 
 /**
@@ -120,6 +121,8 @@ public class DispatcherGUI extends JPanel {
 
 		{
 			factories.put("AWT Reflection", new AWTReflectDispatcherFactory());
+			factories.put("Secondary Loop",
+					new SecondaryLoopDispatcherFactory());
 			factories.put("Concealed Dialog",
 					new ConcealedDialogDispatcherFactory());
 			factories.put("Revealed Dialog",
@@ -27,10 +27,11 @@ import javax.swing.SwingUtilities;
 
 /**
  * A factory of <code>Dispatcher</code>s which uses reflection to AWT
- * internals to dispatch events - used as default by <em>Spin</em> for
- * spin-off. <br>
- * Once Swing offers an official way to start an event pump this class should be
- * replaced by a less intrusive solution.
+ * internals to dispatch events. <br>
+ * Since Java 7 AWT offers an official way to start an event pump, thus
+ * {@link SecondaryLoopDispatcherFactory} is used as default instead. This
+ * factory requires <code>--add-opens java.desktop/java.awt=ALL-UNNAMED</code>
+ * on runtimes with strong encapsulation.
  */
 public class AWTReflectDispatcherFactory implements DispatcherFactory {
 
@@ -0,0 +1,235 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+
+import spin.Evaluator;
+import spin.Invocation;
+
+/**
+ * An evaluator for spin-off, which learns which methods are cheap enough to
+ * be evaluated inline on the EDT. <br>
+ * The duration of each evaluation on a worker thread is measured per method.
+ * Once the 99th percentile of a method stays under the budget for a number of
+ * consecutive windows, the method is promoted to inline evaluation on the
+ * EDT. Inline evaluations are measured too and the method is demoted back to
+ * spin-off as soon as a window's 99th percentile exceeds the budget or a
+ * single evaluation takes longer than ten times the budget.
+ * <p>
+ * Note that methods blocking on events to be dispatched by the EDT must not
+ * be evaluated by this evaluator, use {@link spin.annotation.Off} for these.
+ * </p>
+ * 
+ * @see SpinOffEvaluator
+ */
+public class AdaptiveSpinOffEvaluator extends Evaluator {
+
+	/**
+	 * Default budget of nanoseconds for inline evaluations.
+	 */
+	public static final long DEFAULT_BUDGET = 1000 * 1000;
+
+	/**
+	 * Number of evaluations in a window.
+	 */
+	public static final int WINDOW = 100;
+
+	/**
+	 * Number of consecutive windows under budget required for promotion.
+	 */
+	public static final int PROMOTION_WINDOWS = 3;
+
+	/**
+	 * Increment of the number of samples in packed counts.
+	 */
+	private static final long SAMPLE = 1L << 32;
+
+	private Evaluator evaluator;
+
+	private long budget;
+
+	private ConcurrentMap<Method, MethodState> states = new ConcurrentHashMap<Method, MethodState>();
+
+	/**
+	 * Create an evaluator wrapping a {@link SpinOffEvaluator} with the default
+	 * budget.
+	 */
+	public AdaptiveSpinOffEvaluator() {
+		this(new SpinOffEvaluator(), DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param evaluator
+	 *            evaluator for spin-off
+	 * @param budget
+	 *            nanoseconds an inline evaluation is allowed to take
+	 */
+	public AdaptiveSpinOffEvaluator(Evaluator evaluator, long budget) {
+		if (evaluator == null) {
+			throw new IllegalArgumentException("evaluator must not be null");
+		}
+		if (budget <= 0) {
+			throw new IllegalArgumentException("budget must be positive");
+		}
+		this.evaluator = evaluator;
+		this.budget = budget;
+	}
+
+	/**
+	 * Get the budget for inline evaluations.
+	 * 
+	 * @return nanoseconds
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Test if the given method is currently evaluated inline.
+	 * 
+	 * @param method
+	 *            method to test
+	 * @return <code>true</code> if inline
+	 */
+	public boolean isInline(Method method) {
+		MethodState state = states.get(method);
+		return state != null && state.inline;
+	}
+
+	public void evaluate(Invocation invocation) throws Throwable {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			evaluator.evaluate(invocation);
+			return;
+		}
+
+		MethodState state = getState(invocation.getMethod());
+		if (state.inline) {
+			long start = System.nanoTime();
+			invocation.evaluate();
+			state.record(System.nanoTime() - start, true);
+		} else {
+			evaluator.evaluate(new MeasuredInvocation(invocation, state));
+		}
+	}
+
+	private MethodState getState(Method method) {
+		MethodState state = states.get(method);
+		if (state == null) {
+			state = new MethodState();
+			MethodState existing = states.putIfAbsent(method, state);
+			if (existing != null) {
+				state = existing;
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * The lock-free state of a method.
+	 */
+	private class MethodState {
+
+		/**
+		 * Is the method evaluated inline.
+		 */
+		private volatile boolean inline;
+
+		/**
+		 * Samples of the current window in the high 32 bits, samples over
+		 * budget in the low 32 bits.
+		 */
+		private AtomicLong counts = new AtomicLong();
+
+		/**
+		 * Consecutive windows under budget.
+		 */
+		private AtomicInteger goodWindows = new AtomicInteger();
+
+		/**
+		 * Record the duration of an evaluation.
+		 * 
+		 * @param time
+		 *            nanoseconds of evaluation
+		 * @param inlined
+		 *            was the evaluation inline
+		 */
+		public void record(long time, boolean inlined) {
+			if (inlined && time > budget * 10) {
+				demote();
+				return;
+			}
+
+			long value = counts.addAndGet(SAMPLE + (time > budget ? 1 : 0));
+			if ((value >>> 32) >= WINDOW && counts.compareAndSet(value, 0)) {
+				// this thread closes the window
+				int over = (int) value;
+				boolean underBudget = over * 100 <= WINDOW;
+
+				if (inline) {
+					if (!underBudget) {
+						demote();
+					}
+				} else {
+					if (underBudget) {
+						if (goodWindows.incrementAndGet() >= PROMOTION_WINDOWS) {
+							inline = true;
+						}
+					} else {
+						goodWindows.set(0);
+					}
+				}
+			}
+		}
+
+		private void demote() {
+			inline = false;
+			goodWindows.set(0);
+			counts.set(0);
+		}
+	}
+
+	/**
+	 * An invocation measuring the duration of its evaluation.
+	 */
+	private static class MeasuredInvocation extends DelegatingInvocation {
+
+		private MethodState state;
+
+		public MeasuredInvocation(Invocation invocation, MethodState state) {
+			super(invocation);
+
+			this.state = state;
+		}
+
+		public void evaluate() {
+			long start = System.nanoTime();
+			super.evaluate();
+			state.record(System.nanoTime() - start, false);
+		}
+	}
+}
@@ -0,0 +1,445 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import spin.Evaluator;
+import spin.Invocation;
+import spin.MethodTable;
+import spin.WeakIdentityMap;
+import spin.annotation.Cached;
+
+/**
+ * An evaluator for spin-off, which caches results of idempotent methods. <br>
+ * Results are cached by object, method and arguments, thus a repeated
+ * invocation is answered on the calling thread without any thread hop or
+ * nested dispatching of events. Methods are cached for the milliseconds
+ * declared with {@link Cached}, exceptions are never cached.
+ * <p>
+ * For methods returning a future, the value is cached only once the returned
+ * <code>CompletionStage</code> completed successfully - other futures are not
+ * cached. Each hit is answered with a new completed future, thus callers
+ * never share a future.
+ * </p>
+ * <p>
+ * The cache is bounded by a maximum weight - each result weighs
+ * <code>1</code> by default, thus bounding the number of results - and
+ * evicts the least recently used results first. Results can be invalidated
+ * explicitly or by registering this evaluator as a
+ * <code>PropertyChangeListener</code> on the wrapped objects, invalidating
+ * all results of the source of each event.
+ * </p>
+ * <p>
+ * Objects are referenced weakly by the cache, so caching their results does
+ * not keep them from being collected. Arguments and results are referenced
+ * strongly though - if they reference their object, it is kept until they
+ * expire, are evicted or invalidated. Results of collected objects are never
+ * answered again and are evicted first, as they are no longer used.
+ * </p>
+ * 
+ * @see #getTtl(Method)
+ * @see #weigh(Object)
+ * @see #invalidate(Object)
+ */
+public class CachingSpinOffEvaluator extends Evaluator implements
+		PropertyChangeListener {
+
+	/**
+	 * Default maximum weight of cached results.
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 1000;
+
+	/**
+	 * Time to live of classes, containing annotated methods only.
+	 */
+	private static final MethodTable<Long> ttls = new MethodTable<Long>() {
+		protected Long getValue(Method method, AnnotatedElement element) {
+			Cached cached = element.getAnnotation(Cached.class);
+			if (cached == null || method.getReturnType() == Void.TYPE) {
+				return null;
+			}
+			return Long.valueOf(cached.value());
+		}
+	};
+
+	private Evaluator evaluator;
+
+	private long maxWeight;
+
+	/**
+	 * Cached results of all objects in access order, keyed by the target of
+	 * their object instead of the object itself - guarded by itself.
+	 */
+	private LinkedHashMap<InvocationKey, Entry> entries = new LinkedHashMap<InvocationKey, Entry>(
+			16, 0.75f, true);
+
+	/**
+	 * Targets of objects, guarded by the entries.
+	 */
+	private WeakIdentityMap<Object, Target> targets = new WeakIdentityMap<Object, Target>();
+
+	private long weight;
+
+	/**
+	 * Incremented on each invalidation of all results, so results of
+	 * evaluations overlapping it are not cached.
+	 */
+	private long generation;
+
+	private AtomicLong hits = new AtomicLong();
+
+	private AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Create an evaluator caching results of a default evaluator for
+	 * spin-off.
+	 */
+	public CachingSpinOffEvaluator() {
+		this(new SpinOffEvaluator(), DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param evaluator
+	 *            evaluator to cache results of
+	 * @param maxWeight
+	 *            maximum weight of cached results
+	 */
+	public CachingSpinOffEvaluator(Evaluator evaluator, long maxWeight) {
+		if (evaluator == null) {
+			throw new IllegalArgumentException("evaluator must not be null");
+		}
+		if (maxWeight < 1) {
+			throw new IllegalArgumentException("maxWeight must be positive");
+		}
+		this.evaluator = evaluator;
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * Get the maximum weight of cached results.
+	 * 
+	 * @return maximum weight
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Get the current weight of cached results.
+	 * 
+	 * @return weight
+	 */
+	public long getWeight() {
+		synchronized (entries) {
+			return weight;
+		}
+	}
+
+	/**
+	 * Get the number of invocations answered from the cache so far.
+	 * 
+	 * @return number of hits
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of cacheable invocations evaluated so far.
+	 * 
+	 * @return number of misses
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Answer the given invocation from the cache if possible, otherwise
+	 * evaluate it.
+	 */
+	public void evaluate(Invocation invocation) throws Throwable {
+		long ttl = getTtl(invocation.getMethod());
+		if (ttl < 0) {
+			evaluator.evaluate(invocation);
+			return;
+		}
+
+		Target target;
+		InvocationKey key;
+		long generation;
+		synchronized (entries) {
+			target = getTarget(invocation.getObject());
+			key = new InvocationKey(target, invocation);
+
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (!entry.isExpired()) {
+					hits.incrementAndGet();
+					if (entry.future) {
+						invocation.setResult(CompletableFuture
+								.completedFuture(entry.result));
+					} else {
+						invocation.setResult(entry.result);
+					}
+					return;
+				}
+				remove(key);
+			}
+			generation = target.generation;
+		}
+
+		misses.incrementAndGet();
+		evaluator.evaluate(invocation);
+
+		if (invocation.getThrowable() == null) {
+			if (SpinOffEvaluator.isFuture(invocation.getMethod()
+					.getReturnType())) {
+				putOnCompletion(key, invocation.getResult(), ttl, target,
+						generation);
+			} else {
+				put(key, new Entry(invocation.getResult(), ttl, false),
+						target, generation);
+			}
+		}
+	}
+
+	/**
+	 * Cache the value of the given future once it completed successfully.
+	 */
+	private void putOnCompletion(final InvocationKey key, Object future,
+			final long ttl, final Target target, final long generation) {
+		if (future instanceof CompletionStage) {
+			((CompletionStage<?>) future)
+					.whenComplete(new BiConsumer<Object, Throwable>() {
+						public void accept(Object result, Throwable throwable) {
+							if (throwable == null) {
+								put(key, new Entry(result, ttl, true),
+										target, generation);
+							}
+						}
+					});
+		}
+	}
+
+	/**
+	 * Get the target of the given object, created on first use - must be
+	 * called with the entries locked.
+	 */
+	private Target getTarget(Object object) {
+		Target target = targets.get(object);
+		if (target == null) {
+			target = new Target(this.generation);
+			targets.put(object, target);
+		}
+		return target;
+	}
+
+	private void put(InvocationKey key, Entry entry, Target target,
+			long generation) {
+		if (entry.weight > maxWeight) {
+			// would evict all other results and itself
+			return;
+		}
+
+		synchronized (entries) {
+			if (target.epoch != this.generation
+					|| target.generation != generation) {
+				// invalidated meanwhile
+				return;
+			}
+
+			remove(key);
+			entry.target = target;
+			entries.put(key, entry);
+			target.keys.add(key);
+			weight += entry.weight;
+
+			Iterator<Map.Entry<InvocationKey, Entry>> eldest = entries
+					.entrySet().iterator();
+			while (weight > maxWeight && eldest.hasNext()) {
+				Map.Entry<InvocationKey, Entry> evicted = eldest.next();
+				weight -= evicted.getValue().weight;
+				evicted.getValue().target.keys.remove(evicted.getKey());
+				eldest.remove();
+			}
+		}
+	}
+
+	private void remove(InvocationKey key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			weight -= entry.weight;
+			entry.target.keys.remove(key);
+		}
+	}
+
+	/**
+	 * Invalidate all cached results of the given object.
+	 * 
+	 * @param object
+	 *            object to invalidate results of
+	 */
+	public void invalidate(Object object) {
+		synchronized (entries) {
+			Target target = targets.get(object);
+			if (target == null) {
+				return;
+			}
+			target.generation++;
+
+			Iterator<InvocationKey> keys = target.keys.iterator();
+			while (keys.hasNext()) {
+				weight -= entries.remove(keys.next()).weight;
+				keys.remove();
+			}
+		}
+	}
+
+	/**
+	 * Invalidate all cached results.
+	 */
+	public void invalidateAll() {
+		synchronized (entries) {
+			generation++;
+
+			targets.clear();
+			entries.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * Invalidate all cached results of the source of the given event.
+	 * 
+	 * @param event
+	 *            the event
+	 */
+	public void propertyChange(PropertyChangeEvent event) {
+		invalidate(event.getSource());
+	}
+
+	/**
+	 * Get the milliseconds to cache results of the given method.
+	 * 
+	 * @param method
+	 *            method to get time to live for
+	 * @return milliseconds as declared with {@link Cached}, <code>0</code> to
+	 *         cache until evicted or invalidated, negative if not cached
+	 */
+	protected long getTtl(Method method) {
+		Long ttl = ttls.get(method);
+		if (ttl == null) {
+			return -1;
+		}
+		return ttl.longValue();
+	}
+
+	/**
+	 * Get the weight of the given result.
+	 * 
+	 * @param result
+	 *            result to weigh
+	 * @return weight, <code>1</code> by default
+	 */
+	protected long weigh(Object result) {
+		return 1;
+	}
+
+	/**
+	 * The cache state of a single object, not referencing the object itself.
+	 */
+	private static class Target {
+
+		/**
+		 * The generation of all results this target was created in.
+		 */
+		private long epoch;
+
+		/**
+		 * Incremented on each invalidation of the object's results, so
+		 * results of evaluations overlapping it are not cached.
+		 */
+		private long generation;
+
+		/**
+		 * Keys of the cached results of the object.
+		 */
+		private Set<InvocationKey> keys = new HashSet<InvocationKey>();
+
+		public Target(long epoch) {
+			this.epoch = epoch;
+		}
+	}
+
+	/**
+	 * A cached result.
+	 */
+	private class Entry {
+
+		private Target target;
+
+		private Object result;
+
+		/**
+		 * Is the result the value of a future.
+		 */
+		private boolean future;
+
+		private long weight;
+
+		private boolean expiring;
+
+		/**
+		 * Nanoseconds of expiry.
+		 */
+		private long expiry;
+
+		public Entry(Object result, long ttl, boolean future) {
+			this.result = result;
+			this.future = future;
+			this.weight = weigh(result);
+
+			if (ttl > 0) {
+				this.expiring = true;
+				this.expiry = System.nanoTime()
+						+ TimeUnit.MILLISECONDS.toNanos(ttl);
+			}
+		}
+
+		public boolean isExpired() {
+			return expiring && System.nanoTime() - expiry >= 0;
+		}
+	}
+}
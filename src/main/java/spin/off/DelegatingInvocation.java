@@ -0,0 +1,96 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.reflect.Method;
+
+import spin.Invocation;
+
+/**
+ * An invocation delegating to another invocation, for evaluators that need to
+ * hook into the evaluation.
+ */
+class DelegatingInvocation extends Invocation {
+
+	private Invocation invocation;
+
+	/**
+	 * Create an invocation.
+	 * 
+	 * @param invocation
+	 *            invocation to delegate to
+	 */
+	public DelegatingInvocation(Invocation invocation) {
+		super(null, null, null);
+
+		this.invocation = invocation;
+	}
+
+	public void evaluate() {
+		invocation.evaluate();
+	}
+
+	public Object getObject() {
+		return invocation.getObject();
+	}
+
+	public void setObject(Object object) {
+		invocation.setObject(object);
+	}
+
+	public Method getMethod() {
+		return invocation.getMethod();
+	}
+
+	public void setMethod(Method method) {
+		invocation.setMethod(method);
+	}
+
+	public Object[] getArguments() {
+		return invocation.getArguments();
+	}
+
+	public void setArguments(Object[] args) {
+		invocation.setArguments(args);
+	}
+
+	public Object getResult() {
+		return invocation.getResult();
+	}
+
+	public void setResult(Object result) {
+		invocation.setResult(result);
+	}
+
+	public Throwable getThrowable() {
+		return invocation.getThrowable();
+	}
+
+	public void setThrowable(Throwable throwable) {
+		invocation.setThrowable(throwable);
+	}
+
+	public boolean isEvaluated() {
+		return invocation.isEvaluated();
+	}
+
+	public Object resultOrThrow() throws Throwable {
+		return invocation.resultOrThrow();
+	}
+}
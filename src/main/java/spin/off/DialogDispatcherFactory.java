@@ -29,7 +29,7 @@ import javax.swing.SwingUtilities;
  * 
  * @see spin.off.SpinOffEvaluator#SpinOffEvaluator(DispatcherFactory)
  * @see spin.off.SpinOffEvaluator#setDefaultDispatcherFactory(DispatcherFactory)
- * @see AWTReflectDispatcherFactory
+ * @see SecondaryLoopDispatcherFactory
  */
 public abstract class DialogDispatcherFactory implements DispatcherFactory {
 
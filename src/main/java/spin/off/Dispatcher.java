@@ -37,7 +37,8 @@ public interface Dispatcher {
 
 	/**
 	 * Stop dispatching events. <br>
-	 * This method is <bold>not</bold> called on the EDT.
+	 * This method is usually <bold>not</bold> called on the EDT - except for
+	 * cancellation of an invocation, e.g. from an action of a cancel button.
 	 */
 	public void stop();
 }
\ No newline at end of file
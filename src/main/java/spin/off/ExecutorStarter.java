@@ -0,0 +1,73 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Implementation of a <code>Starter</code> that adapts an arbitrary
+ * <code>java.util.concurrent.Executor</code>, e.g. a thread pool already
+ * maintained by the application:
+ * 
+ * <pre>
+ * SpinOffEvaluator.setDefaultStarter(new ExecutorStarter(executor));
+ * </pre>
+ * 
+ * @see PooledStarter
+ */
+public class ExecutorStarter implements Starter {
+
+	/**
+	 * The executor to start runnables with.
+	 */
+	private Executor executor;
+
+	/**
+	 * Create a starter for the given executor.
+	 * 
+	 * @param executor
+	 *            executor to start runnables with
+	 */
+	public ExecutorStarter(Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor must not be null");
+		}
+		this.executor = executor;
+	}
+
+	/**
+	 * Get the adapted executor.
+	 * 
+	 * @return executor
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Start a runnable asynchronously.
+	 * 
+	 * @param runnable
+	 *            runnable to start
+	 */
+	public void start(Runnable runnable) {
+
+		executor.execute(runnable);
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+
+import javax.swing.SwingUtilities;
+
+import spin.Invocation;
+import spin.MethodTable;
+import spin.annotation.Forget;
+
+/**
+ * An evaluator for spin-off, which doesn't wait for invocations of void
+ * methods from the EDT. <br>
+ * Such invocations are queued to the FIFO mailbox of their object and the
+ * EDT returns immediately - invocations on the same object are still
+ * evaluated in order, including waiting invocations of other methods.
+ * Exceptions thrown by forgotten invocations are passed to an exception
+ * handler, exceptions thrown by the handler itself are ignored.
+ * <p>
+ * Only methods annotated with {@link Forget} are forgotten, unless all void
+ * methods of the proxies are opted in on construction.
+ * </p>
+ * 
+ * @see #setExceptionHandler(Thread.UncaughtExceptionHandler)
+ */
+public class FireAndForgetSpinOffEvaluator extends SerialSpinOffEvaluator {
+
+	/**
+	 * Forgotten methods of classes.
+	 */
+	private static final MethodTable<Boolean> forgotten = new MethodTable<Boolean>() {
+		protected Boolean getValue(Method method, AnnotatedElement element) {
+			if (element.isAnnotationPresent(Forget.class)) {
+				return Boolean.TRUE;
+			}
+			return null;
+		}
+	};
+
+	private boolean all;
+
+	private volatile Thread.UncaughtExceptionHandler exceptionHandler;
+
+	/**
+	 * Create an evaluator forgetting annotated methods only, using the default
+	 * dispatcherFactory and starter.
+	 */
+	public FireAndForgetSpinOffEvaluator() {
+		this(false);
+	}
+
+	/**
+	 * Create an evaluator using the default dispatcherFactory and starter.
+	 * 
+	 * @param all
+	 *            should all void methods be forgotten
+	 */
+	public FireAndForgetSpinOffEvaluator(boolean all) {
+		this(SpinOffEvaluator.getDefaultDispatcherFactory(), SpinOffEvaluator
+				.getDefaultStarter(), DEFAULT_BATCH_SIZE, all);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param dispatcherFactory
+	 *            factory of dispatchers
+	 * @param starter
+	 *            starter of threads draining mailboxes
+	 * @param batchSize
+	 *            number of invocations evaluated by a thread before it
+	 *            yields the processor
+	 * @param all
+	 *            should all void methods be forgotten
+	 */
+	public FireAndForgetSpinOffEvaluator(DispatcherFactory dispatcherFactory,
+			Starter starter, int batchSize, boolean all) {
+		super(dispatcherFactory, starter, batchSize);
+
+		this.all = all;
+	}
+
+	/**
+	 * Get the handler of exceptions thrown by forgotten invocations.
+	 * 
+	 * @return handler or <code>null</code> if the uncaught exception handler
+	 *         of the evaluating thread is used
+	 */
+	public Thread.UncaughtExceptionHandler getExceptionHandler() {
+		return exceptionHandler;
+	}
+
+	/**
+	 * Set the handler of exceptions thrown by forgotten invocations.
+	 * 
+	 * @param exceptionHandler
+	 *            handler or <code>null</code> to use the uncaught exception
+	 *            handler of the evaluating thread
+	 */
+	public void setExceptionHandler(
+			Thread.UncaughtExceptionHandler exceptionHandler) {
+		this.exceptionHandler = exceptionHandler;
+	}
+
+	/**
+	 * Forget the invocation if possible, otherwise evaluate in turn.
+	 */
+	public void evaluate(Invocation invocation) throws Throwable {
+		if (SwingUtilities.isEventDispatchThread() && isForget(invocation)) {
+			post(invocation.getObject(), new Forgotten(invocation));
+		} else {
+			super.evaluate(invocation);
+		}
+	}
+
+	/**
+	 * Test if the given invocation should be forgotten.
+	 * 
+	 * @param invocation
+	 *            invocation to test
+	 * @return <code>true</code> if the method has no return value and is
+	 *         opted in
+	 */
+	protected boolean isForget(Invocation invocation) {
+		Method method = invocation.getMethod();
+		if (method.getReturnType() != Void.TYPE) {
+			return false;
+		}
+		return all || forgotten.get(method) != null;
+	}
+
+	/**
+	 * A forgotten invocation.
+	 */
+	private class Forgotten implements Runnable {
+
+		private Invocation invocation;
+
+		public Forgotten(Invocation invocation) {
+			// the original might be reused once the caller returned
+			this.invocation = new Invocation(invocation.getObject(),
+					invocation.getMethod(), invocation.getArguments());
+		}
+
+		public void run() {
+			invocation.evaluate();
+
+			Throwable throwable = invocation.getThrowable();
+			if (throwable != null) {
+				Thread thread = Thread.currentThread();
+
+				Thread.UncaughtExceptionHandler handler = exceptionHandler;
+				if (handler == null) {
+					handler = thread.getUncaughtExceptionHandler();
+				}
+				try {
+					handler.uncaughtException(thread, throwable);
+				} catch (Throwable ignored) {
+					// as the JVM does for uncaught exceptions
+				}
+			}
+		}
+	}
+}
@@ -35,7 +35,7 @@ import javax.swing.SwingUtilities;
  * 
  * @see spin.off.SpinOffEvaluator#SpinOffEvaluator(DispatcherFactory)
  * @see spin.off.SpinOffEvaluator#setDefaultDispatcherFactory(DispatcherFactory)
- * @see AWTReflectDispatcherFactory
+ * @see SecondaryLoopDispatcherFactory
  */
 public class InternalOptionPaneDispatcherFactory implements DispatcherFactory {
 
@@ -0,0 +1,82 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import spin.Invocation;
+
+/**
+ * The key of an invocation, consisting of its object, its method and its
+ * arguments - objects are compared by identity, arguments by equality.
+ */
+class InvocationKey {
+
+	private Object object;
+
+	private Method method;
+
+	private Object[] args;
+
+	private int hashCode;
+
+	/**
+	 * Create a key.
+	 * 
+	 * @param invocation
+	 *            invocation to create key for
+	 */
+	public InvocationKey(Invocation invocation) {
+		this(invocation.getObject(), invocation);
+	}
+
+	/**
+	 * Create a key with the given object standing in for the object of the
+	 * invocation.
+	 * 
+	 * @param object
+	 *            object to compare by identity
+	 * @param invocation
+	 *            invocation to take method and arguments from
+	 */
+	public InvocationKey(Object object, Invocation invocation) {
+		this.object = object;
+		this.method = invocation.getMethod();
+
+		Object[] args = invocation.getArguments();
+		this.args = args == null ? null : args.clone();
+
+		this.hashCode = System.identityHashCode(object) * 31
+				+ method.hashCode() + Arrays.deepHashCode(this.args);
+	}
+
+	public int hashCode() {
+		return hashCode;
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof InvocationKey)) {
+			return false;
+		}
+		InvocationKey that = (InvocationKey) other;
+		return this.object == that.object && this.method.equals(that.method)
+				&& Arrays.deepEquals(this.args, that.args);
+	}
+}
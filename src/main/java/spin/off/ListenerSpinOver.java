@@ -105,7 +105,9 @@ public class ListenerSpinOver extends Evaluator {
 	}
 
 	/**
-	 * Spin-over the given object.
+	 * Spin-over the given object. <br>
+	 * Since <em>Spin</em> proxies are canonical, a listener removed is
+	 * wrapped in the identical proxy as it was on its addition.
 	 * 
 	 * @param object
 	 *            object to spin-over
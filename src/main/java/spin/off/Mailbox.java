@@ -0,0 +1,156 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A FIFO mailbox of runnables, which are run one after another on threads
+ * of a shared <code>Starter</code>. <br>
+ * At most one thread drains a mailbox at any time. A thread keeps draining
+ * until the mailbox is empty, yielding the processor after each batch of
+ * runnables - it never hands the mailbox back to the starter, as a starter
+ * blocking its caller (e.g. {@link PooledStarter#CALLER_BLOCKS}) would
+ * deadlock a pool whose threads are all busy draining mailboxes. Exceptions
+ * thrown by runnables are passed to the uncaught exception handler of the
+ * draining thread.
+ */
+class Mailbox implements Starter, Runnable {
+
+	/**
+	 * The starter of threads draining this mailbox.
+	 */
+	private Starter starter;
+
+	/**
+	 * Number of runnables to run before yielding.
+	 */
+	private int batchSize;
+
+	/**
+	 * The pending runnables.
+	 */
+	private Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+
+	/**
+	 * Is a thread started or draining this mailbox.
+	 */
+	private AtomicBoolean scheduled = new AtomicBoolean(false);
+
+	/**
+	 * The thread currently draining.
+	 */
+	private volatile Thread owner;
+
+	/**
+	 * Create a mailbox.
+	 * 
+	 * @param starter
+	 *            starter of threads to drain with
+	 * @param batchSize
+	 *            number of runnables to run before yielding
+	 */
+	public Mailbox(Starter starter, int batchSize) {
+		this.starter = starter;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Post the given runnable to this mailbox.
+	 * 
+	 * @param runnable
+	 *            runnable to run after all previously posted runnables
+	 */
+	public void start(Runnable runnable) {
+		queue.offer(runnable);
+
+		schedule();
+	}
+
+	/**
+	 * Test if the current thread is draining this mailbox.
+	 * 
+	 * @return <code>true</code> if draining
+	 */
+	public boolean isDraining() {
+		return owner == Thread.currentThread();
+	}
+
+	/**
+	 * Start a thread for draining, if not already scheduled.
+	 */
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			try {
+				starter.start(this);
+			} catch (RuntimeException ex) {
+				scheduled.set(false);
+
+				throw ex;
+			}
+		}
+	}
+
+	/**
+	 * Drain runnables until this mailbox is empty.
+	 */
+	public void run() {
+		boolean drained = false;
+		try {
+			do {
+				owner = Thread.currentThread();
+				drain();
+				owner = null;
+
+				scheduled.set(false);
+				// runnables might have been posted after the last poll
+			} while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+			drained = true;
+		} finally {
+			if (!drained) {
+				// an exception handler failed, so leave it to another thread
+				owner = null;
+				scheduled.set(false);
+				if (!queue.isEmpty()) {
+					schedule();
+				}
+			}
+		}
+	}
+
+	private void drain() {
+		int count = 0;
+		Runnable runnable;
+		while ((runnable = queue.poll()) != null) {
+			try {
+				runnable.run();
+			} catch (Throwable throwable) {
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread,
+						throwable);
+			}
+
+			if (++count % batchSize == 0) {
+				Thread.yield();
+			}
+		}
+	}
+}
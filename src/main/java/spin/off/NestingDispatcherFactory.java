@@ -0,0 +1,221 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A factory of <code>Dispatcher</code>s which keeps track of outstanding
+ * spin-off invocations on the EDT. <br>
+ * If an event dispatched while waiting for an invocation triggers another
+ * spin-off, the new dispatching is nested inside the current one. Since each
+ * waiting caller is a frame on the EDT's stack, an outer invocation cannot
+ * return before the inner ones, no matter which completes first - there is
+ * no single loop returning to each caller as soon as its own result is
+ * ready. An outer invocation that completes meanwhile is not woken up,
+ * instead its dispatching is ended once all inner ones have unwound. <br>
+ * Up to the maximum depth dispatchers are tracked, see {@link #getDepth()}.
+ * Beyond it further invocations fall back to plain nested dispatching with
+ * the underlying factory - neither failing nor blocking the EDT, which would
+ * deadlock any invocation calling back to the EDT.
+ * 
+ * @see SpinOffEvaluator#SpinOffEvaluator(DispatcherFactory)
+ */
+public class NestingDispatcherFactory implements DispatcherFactory {
+
+	/**
+	 * Default maximum depth of nested dispatching.
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 8;
+
+	/**
+	 * The factory of dispatchers doing the actual dispatching.
+	 */
+	private DispatcherFactory factory;
+
+	/**
+	 * The maximum depth of nested dispatching.
+	 */
+	private int maxDepth;
+
+	/**
+	 * The outstanding dispatchers, innermost last - accessed on the EDT
+	 * only.
+	 */
+	private List<NestingDispatcher> dispatchers = new ArrayList<NestingDispatcher>();
+
+	/**
+	 * Create a factory using {@link SecondaryLoopDispatcherFactory} with the
+	 * default maximum depth.
+	 */
+	public NestingDispatcherFactory() {
+		this(new SecondaryLoopDispatcherFactory(), DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * Create a factory.
+	 * 
+	 * @param factory
+	 *            factory of dispatchers doing the actual dispatching
+	 * @param maxDepth
+	 *            maximum depth of nested dispatching
+	 */
+	public NestingDispatcherFactory(DispatcherFactory factory, int maxDepth) {
+		if (factory == null) {
+			throw new IllegalArgumentException("factory must not be null");
+		}
+		if (maxDepth < 1) {
+			throw new IllegalArgumentException("maxDepth must be positive");
+		}
+		this.factory = factory;
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Create a dispatcher for events - must be called on the EDT.
+	 * 
+	 * @return dispatcher, not tracked if the maximum depth is reached
+	 */
+	public Dispatcher createDispatcher() {
+		return new NestingDispatcher(dispatchers.size() < maxDepth);
+	}
+
+	/**
+	 * Get the number of tracked outstanding invocations - must be called on
+	 * the EDT.
+	 * 
+	 * @return number of tracked invocations, at most the maximum depth
+	 */
+	public int getDepth() {
+		return dispatchers.size();
+	}
+
+	/**
+	 * A dispatcher that is aware of other dispatchers nested inside.
+	 */
+	private class NestingDispatcher implements Dispatcher {
+
+		/**
+		 * The dispatcher doing the actual dispatching.
+		 */
+		private Dispatcher dispatcher;
+
+		/**
+		 * Was the invocation completed.
+		 */
+		private boolean stopped;
+
+		/**
+		 * Number of other dispatchers nested inside this one.
+		 */
+		private int covered;
+
+		/**
+		 * Is this dispatcher tracked.
+		 */
+		private boolean tracked;
+
+		public NestingDispatcher(boolean tracked) {
+			this.tracked = tracked;
+		}
+
+		/**
+		 * Start the dispatching.
+		 */
+		public void start() throws Throwable {
+			synchronized (this) {
+				if (stopped) {
+					return;
+				}
+
+				dispatcher = factory.createDispatcher();
+			}
+
+			// untracked dispatchers all nest inside the innermost tracked one
+			NestingDispatcher outer = null;
+			if (!dispatchers.isEmpty()) {
+				outer = dispatchers.get(dispatchers.size() - 1);
+				outer.cover();
+			}
+			if (tracked) {
+				dispatchers.add(this);
+			}
+			try {
+				dispatcher.start();
+			} finally {
+				if (tracked) {
+					dispatchers.remove(dispatchers.size() - 1);
+				}
+
+				if (outer != null) {
+					outer.uncover();
+				}
+			}
+		}
+
+		/**
+		 * Stop dispatching - the actual dispatching is not stopped as long as
+		 * another dispatcher is nested inside this one.
+		 */
+		public void stop() {
+			Dispatcher dispatcher;
+			synchronized (this) {
+				stopped = true;
+
+				if (covered > 0) {
+					return;
+				}
+				dispatcher = this.dispatcher;
+			}
+
+			if (dispatcher != null) {
+				dispatcher.stop();
+			}
+		}
+
+		/**
+		 * Another dispatcher is nested inside this one.
+		 */
+		private synchronized void cover() {
+			covered++;
+		}
+
+		/**
+		 * A nested dispatcher has unwound, so stop the actual dispatching if
+		 * the invocation has completed meanwhile and no other dispatcher is
+		 * nested inside.
+		 */
+		private void uncover() {
+			Dispatcher dispatcher;
+			synchronized (this) {
+				covered--;
+
+				if (covered > 0 || !stopped) {
+					return;
+				}
+				dispatcher = this.dispatcher;
+			}
+
+			if (dispatcher != null) {
+				dispatcher.stop();
+			}
+		}
+	}
+}
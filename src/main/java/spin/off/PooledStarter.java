@@ -0,0 +1,171 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of a <code>Starter</code> that reuses a bounded pool of
+ * threads instead of creating a new thread for each invocation of
+ * {@link #start(Runnable)}. Install it globally with:
+ * 
+ * <pre>
+ * SpinOffEvaluator.setDefaultStarter(new PooledStarter());
+ * </pre>
+ * 
+ * Once all threads of the pool are busy (and the optional queue is full) the
+ * configured rejection policy decides what happens to further runnables, see
+ * {@link #CALLER_BLOCKS} and {@link #QUEUE_LIMIT}.
+ * 
+ * @see SpinOffEvaluator#setDefaultStarter(Starter)
+ */
+public class PooledStarter extends ExecutorStarter {
+
+	/**
+	 * Policy blocking the starting thread until a pooled thread is available.
+	 */
+	public static final RejectedExecutionHandler CALLER_BLOCKS = new CallerBlocksPolicy();
+
+	/**
+	 * Policy failing with a <code>RejectedExecutionException</code> if no
+	 * pooled thread is available and the queue is full.
+	 */
+	public static final RejectedExecutionHandler QUEUE_LIMIT = new ThreadPoolExecutor.AbortPolicy();
+
+	/**
+	 * Create a starter with up to 64 threads which are discarded after being
+	 * idle for one minute.
+	 */
+	public PooledStarter() {
+		this(0, 64, 60 * 1000);
+	}
+
+	/**
+	 * Create a starter blocking the caller when all threads are busy.
+	 * 
+	 * @param corePoolSize
+	 *            number of threads to keep in the pool even if idle
+	 * @param maximumPoolSize
+	 *            maximum number of threads in the pool
+	 * @param keepAlive
+	 *            milliseconds an idle non-core thread is kept in the pool
+	 */
+	public PooledStarter(int corePoolSize, int maximumPoolSize, long keepAlive) {
+		this(corePoolSize, maximumPoolSize, keepAlive, 0, CALLER_BLOCKS);
+	}
+
+	/**
+	 * Create a starter.
+	 * 
+	 * @param corePoolSize
+	 *            number of threads to keep in the pool even if idle
+	 * @param maximumPoolSize
+	 *            maximum number of threads in the pool
+	 * @param keepAlive
+	 *            milliseconds an idle non-core thread is kept in the pool
+	 * @param queueCapacity
+	 *            number of runnables to queue when all threads are busy,
+	 *            <code>0</code> for direct handoff
+	 * @param policy
+	 *            policy for runnables that cannot be started
+	 */
+	public PooledStarter(int corePoolSize, int maximumPoolSize,
+			long keepAlive, int queueCapacity, RejectedExecutionHandler policy) {
+		super(new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAlive,
+				TimeUnit.MILLISECONDS, createQueue(queueCapacity),
+				new SpinThreadFactory(true), policy));
+	}
+
+	/**
+	 * Create the queue for runnables waiting for a thread.
+	 * 
+	 * @param capacity
+	 *            capacity of queue
+	 * @return queue
+	 */
+	private static BlockingQueue<Runnable> createQueue(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException(
+					"queueCapacity must not be negative");
+		}
+
+		if (capacity == 0) {
+			return new SynchronousQueue<Runnable>();
+		} else {
+			return new ArrayBlockingQueue<Runnable>(capacity);
+		}
+	}
+
+	/**
+	 * Get the current number of threads in the pool.
+	 * 
+	 * @return number of threads
+	 */
+	public int getPoolSize() {
+		return getPool().getPoolSize();
+	}
+
+	/**
+	 * Get the approximate number of threads busy starting runnables.
+	 * 
+	 * @return number of busy threads
+	 */
+	public int getActiveCount() {
+		return getPool().getActiveCount();
+	}
+
+	/**
+	 * Shutdown the pool - already started runnables are completed, but
+	 * further runnables are rejected.
+	 */
+	public void shutdown() {
+		getPool().shutdown();
+	}
+
+	private ThreadPoolExecutor getPool() {
+		return (ThreadPoolExecutor) getExecutor();
+	}
+
+	/**
+	 * Policy waiting for the pool to take the rejected runnable.
+	 */
+	private static class CallerBlocksPolicy implements RejectedExecutionHandler {
+
+		public void rejectedExecution(Runnable runnable,
+				ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("starter is shut down");
+			}
+
+			try {
+				executor.getQueue().put(runnable);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+
+				throw new RejectedExecutionException(ex);
+			}
+		}
+	}
+}
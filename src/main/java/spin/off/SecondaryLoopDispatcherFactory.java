@@ -0,0 +1,138 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.awt.EventQueue;
+import java.awt.SecondaryLoop;
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A factory of <code>Dispatcher</code>s which use the official
+ * <code>java.awt.SecondaryLoop</code> to dispatch events - used as default by
+ * <em>Spin</em> for spin-off. <br>
+ * In contrast to {@link AWTReflectDispatcherFactory} no access to AWT
+ * internals is required, thus it works in secured environments and on
+ * runtimes with strong encapsulation. <br>
+ * Dispatchers and their loops are reused once they stopped, so nested
+ * dispatching allocates no new dispatchers in steady state.
+ */
+public class SecondaryLoopDispatcherFactory implements DispatcherFactory {
+
+	/**
+	 * Stopped dispatchers available for reuse - accessed on the EDT only.
+	 */
+	private List<SecondaryLoopDispatcher> idle = new ArrayList<SecondaryLoopDispatcher>();
+
+	/**
+	 * Create a dispatcher for events.
+	 * 
+	 * @return dispatcher that does the actual dispatching
+	 */
+	public Dispatcher createDispatcher() {
+		Thread thread = Thread.currentThread();
+
+		while (!idle.isEmpty()) {
+			SecondaryLoopDispatcher dispatcher = idle.remove(idle.size() - 1);
+			if (dispatcher.thread == thread) {
+				dispatcher.reset();
+				return dispatcher;
+			}
+			// EDT was replaced, loop is no longer usable
+		}
+
+		return new SecondaryLoopDispatcher(thread);
+	}
+
+	/**
+	 * Dispatcher with a <code>SecondaryLoop</code>.
+	 */
+	private class SecondaryLoopDispatcher implements Dispatcher {
+
+		/**
+		 * The EDT the loop was created on.
+		 */
+		private Thread thread;
+
+		/**
+		 * The loop used to do the actual dispatching.
+		 */
+		private SecondaryLoop loop;
+
+		/**
+		 * Flag indicating that dispatching should stop.
+		 */
+		private boolean stopDispatching = false;
+
+		/**
+		 * Create a dispatcher.
+		 * 
+		 * @param thread
+		 *            the current EDT
+		 */
+		public SecondaryLoopDispatcher(Thread thread) {
+			this.thread = thread;
+
+			EventQueue queue = Toolkit.getDefaultToolkit()
+					.getSystemEventQueue();
+			this.loop = queue.createSecondaryLoop();
+		}
+
+		/**
+		 * Reset for reuse.
+		 */
+		public synchronized void reset() {
+			stopDispatching = false;
+		}
+
+		/**
+		 * Start the dispatching.
+		 */
+		public void start() throws Throwable {
+			// enter() returns immediately if exit() was already called
+			loop.enter();
+
+			synchronized (this) {
+				// if the EDT refuses to pump events (e.g. because of a
+				// sun.awt.AWTAutoShutdown)
+				// we can do nothing else but wait for stop() to be called
+				while (!stopDispatching) {
+					wait();
+				}
+			}
+
+			idle.add(this);
+		}
+
+		/**
+		 * Stop dispatching.
+		 */
+		public void stop() {
+			synchronized (this) {
+				stopDispatching = true;
+
+				// notify possibly waiting start()
+				notifyAll();
+			}
+
+			loop.exit();
+		}
+	}
+}
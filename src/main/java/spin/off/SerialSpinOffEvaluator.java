@@ -0,0 +1,213 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import javax.swing.SwingUtilities;
+
+import spin.Evaluator;
+import spin.Invocation;
+import spin.WeakIdentityMap;
+
+/**
+ * An evaluator for spin-off, which serializes all invocations on the same
+ * object ("actor mode"). <br>
+ * Each wrapped object gets its own FIFO mailbox, drained by threads of a
+ * shared <code>Starter</code>. Thus invocations on one object never overlap
+ * and need no locking, while invocations on different objects still run in
+ * parallel. A mailbox is reclaimed as soon as its object is garbage
+ * collected, e.g. after its last proxy is gone.
+ * <p>
+ * Note that an invocation has to wait for all previous invocations on the
+ * same object, e.g. a <code>cancel()</code> is not evaluated before a
+ * running <code>start()</code> completes. Invocations from other threads
+ * than the EDT wait for their turn too, while reentrant invocations from a
+ * draining thread are evaluated immediately.
+ * </p>
+ * 
+ * @see SpinOffEvaluator
+ */
+public class SerialSpinOffEvaluator extends Evaluator {
+
+	/**
+	 * Default number of invocations evaluated by a thread before it yields
+	 * the processor.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 16;
+
+	/**
+	 * The factory of dispatchers.
+	 */
+	private DispatcherFactory dispatcherFactory;
+
+	/**
+	 * The shared starter for all mailboxes.
+	 */
+	private Starter starter;
+
+	/**
+	 * Number of invocations evaluated in one batch.
+	 */
+	private int batchSize;
+
+	/**
+	 * Mailboxes of wrapped objects.
+	 */
+	private WeakIdentityMap<Object, SerialMailbox> mailboxes = new WeakIdentityMap<Object, SerialMailbox>();
+
+	/**
+	 * Create an evaluator using the default dispatcherFactory and starter of
+	 * {@link SpinOffEvaluator}.
+	 */
+	public SerialSpinOffEvaluator() {
+		this(SpinOffEvaluator.getDefaultDispatcherFactory(), SpinOffEvaluator
+				.getDefaultStarter());
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param dispatcherFactory
+	 *            factory of dispatchers
+	 * @param starter
+	 *            shared starter for all mailboxes
+	 */
+	public SerialSpinOffEvaluator(DispatcherFactory dispatcherFactory,
+			Starter starter) {
+		this(dispatcherFactory, starter, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param dispatcherFactory
+	 *            factory of dispatchers
+	 * @param starter
+	 *            shared starter for all mailboxes
+	 * @param batchSize
+	 *            number of invocations evaluated by a thread before it
+	 *            yields the processor
+	 */
+	public SerialSpinOffEvaluator(DispatcherFactory dispatcherFactory,
+			Starter starter, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be positive");
+		}
+		this.dispatcherFactory = dispatcherFactory;
+		this.starter = starter;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Spin the given invocation off the EDT, after all previous invocations
+	 * on the same object.
+	 * 
+	 * @param invocation
+	 *            invocation to spin-off
+	 */
+	public void evaluate(final Invocation invocation) throws Throwable {
+		SerialMailbox mailbox = getMailbox(invocation.getObject());
+
+		if (SwingUtilities.isEventDispatchThread()) {
+			mailbox.evaluator.evaluate(invocation);
+		} else if (mailbox.isDraining()) {
+			invocation.evaluate();
+		} else {
+			mailbox.evaluateAndWait(invocation);
+		}
+	}
+
+	/**
+	 * Get the mailbox for the given object.
+	 * 
+	 * @param object
+	 *            object to get mailbox for
+	 * @return mailbox
+	 */
+	private SerialMailbox getMailbox(Object object) {
+		synchronized (mailboxes) {
+			SerialMailbox mailbox = mailboxes.get(object);
+			if (mailbox == null) {
+				mailbox = new SerialMailbox();
+				mailboxes.put(object, mailbox);
+			}
+			return mailbox;
+		}
+	}
+
+	/**
+	 * Post the given runnable to the mailbox of the given object, i.e. it is
+	 * run after all previous invocations on the object.
+	 * 
+	 * @param object
+	 *            object to post to
+	 * @param runnable
+	 *            runnable to run in turn
+	 */
+	void post(Object object, Runnable runnable) {
+		getMailbox(object).start(runnable);
+	}
+
+	/**
+	 * A mailbox with its own evaluator for spin-off.
+	 */
+	private class SerialMailbox extends Mailbox {
+
+		private SpinOffEvaluator evaluator;
+
+		public SerialMailbox() {
+			super(starter, batchSize);
+
+			evaluator = new SpinOffEvaluator(dispatcherFactory, this);
+		}
+
+		/**
+		 * Evaluate the given invocation in turn, waiting for its completion.
+		 * 
+		 * @param invocation
+		 *            invocation to evaluate
+		 */
+		public void evaluateAndWait(final Invocation invocation) {
+			final Object lock = new Object();
+
+			start(new Runnable() {
+				public void run() {
+					invocation.evaluate();
+
+					synchronized (lock) {
+						lock.notifyAll();
+					}
+				}
+			});
+
+			boolean interrupted = false;
+			synchronized (lock) {
+				while (!invocation.isEvaluated()) {
+					try {
+						lock.wait();
+					} catch (InterruptedException ex) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
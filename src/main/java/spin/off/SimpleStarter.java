@@ -25,23 +25,9 @@ package spin.off;
 public class SimpleStarter implements Starter {
 
 	/**
-	 * The threadGroup used for all threads.
+	 * The factory of threads.
 	 */
-	private static final ThreadGroup threadGroup = new ThreadGroup("spin");
-
-	/**
-	 * For autonumbering anonymous threads.
-	 */
-	private static int threadNumber;
-
-	/**
-	 * Get the next thread number.
-	 * 
-	 * @return next thread number
-	 */
-	private static synchronized int nextThreadNumber() {
-		return threadNumber++;
-	}
+	private static final SpinThreadFactory threadFactory = new SpinThreadFactory();
 
 	/**
 	 * Start a runnable asynchronously.
@@ -51,6 +37,6 @@ public class SimpleStarter implements Starter {
 	 */
 	public void start(Runnable runnable) {
 
-		new Thread(threadGroup, runnable, "Spin-" + nextThreadNumber()).start();
+		threadFactory.newThread(runnable).start();
 	}
 }
@@ -0,0 +1,254 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+
+import spin.Evaluator;
+import spin.Invocation;
+
+/**
+ * An evaluator for spin-off, which lets identical concurrent invocations
+ * share a single evaluation. <br>
+ * While an invocation is in flight, further invocations with the same object,
+ * method and equal arguments don't start another evaluation but wait for the
+ * in-flight one and get its result or exception - on the EDT events are
+ * dispatched while waiting.
+ * <p>
+ * Only methods with a return value are shared. Note that all callers get the
+ * same result object, which therefore should not be mutated.
+ * </p>
+ * 
+ * @see #isShared(Invocation)
+ */
+public class SingleFlightSpinOffEvaluator extends Evaluator {
+
+	private Evaluator evaluator;
+
+	private DispatcherFactory dispatcherFactory;
+
+	/**
+	 * Invocations in flight.
+	 */
+	private ConcurrentMap<InvocationKey, Flight> flights = new ConcurrentHashMap<InvocationKey, Flight>();
+
+	private AtomicLong shared = new AtomicLong();
+
+	/**
+	 * Create an evaluator sharing evaluations of a default evaluator for
+	 * spin-off.
+	 */
+	public SingleFlightSpinOffEvaluator() {
+		this(new SpinOffEvaluator());
+	}
+
+	/**
+	 * Create an evaluator using the default dispatcherFactory.
+	 * 
+	 * @param evaluator
+	 *            evaluator to share evaluations of
+	 * @see SpinOffEvaluator#getDefaultDispatcherFactory()
+	 */
+	public SingleFlightSpinOffEvaluator(Evaluator evaluator) {
+		this(evaluator, SpinOffEvaluator.getDefaultDispatcherFactory());
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param evaluator
+	 *            evaluator to share evaluations of
+	 * @param dispatcherFactory
+	 *            factory of dispatchers for waiting on the EDT
+	 */
+	public SingleFlightSpinOffEvaluator(Evaluator evaluator,
+			DispatcherFactory dispatcherFactory) {
+		if (evaluator == null) {
+			throw new IllegalArgumentException("evaluator must not be null");
+		}
+		if (dispatcherFactory == null) {
+			throw new IllegalArgumentException(
+					"dispatcherFactory must not be null");
+		}
+		this.evaluator = evaluator;
+		this.dispatcherFactory = dispatcherFactory;
+	}
+
+	/**
+	 * Get the number of invocations that shared an evaluation so far.
+	 * 
+	 * @return number of shared invocations
+	 */
+	public long getSharedCount() {
+		return shared.get();
+	}
+
+	/**
+	 * Evaluate the given invocation or join an identical one in flight.
+	 */
+	public void evaluate(Invocation invocation) throws Throwable {
+		if (!isShared(invocation)) {
+			evaluator.evaluate(invocation);
+			return;
+		}
+
+		Flight flight = new Flight(new InvocationKey(invocation));
+		Flight leading = flights.putIfAbsent(flight.key, flight);
+		if (leading == null) {
+			try {
+				evaluator.evaluate(new Leading(invocation, flight));
+			} catch (Throwable throwable) {
+				flight.complete(null, throwable);
+
+				throw throwable;
+			}
+			// the evaluator might not have evaluated the invocation itself
+			flight.complete(invocation.getResult(), invocation.getThrowable());
+		} else {
+			shared.incrementAndGet();
+
+			leading.join();
+			if (leading.throwable != null) {
+				invocation.setThrowable(leading.throwable);
+			} else {
+				invocation.setResult(leading.result);
+			}
+		}
+	}
+
+	/**
+	 * Test if the given invocation may share an evaluation.
+	 * 
+	 * @param invocation
+	 *            invocation to test
+	 * @return <code>true</code> if the method has a return value
+	 */
+	protected boolean isShared(Invocation invocation) {
+		return invocation.getMethod().getReturnType() != Void.TYPE;
+	}
+
+	/**
+	 * An evaluation in flight.
+	 */
+	private class Flight {
+
+		private InvocationKey key;
+
+		private boolean done;
+
+		private Object result;
+
+		private Throwable throwable;
+
+		/**
+		 * Dispatchers of waiting invocations on the EDT.
+		 */
+		private List<Dispatcher> dispatchers = new ArrayList<Dispatcher>();
+
+		public Flight(InvocationKey key) {
+			this.key = key;
+		}
+
+		/**
+		 * Complete this flight, if not already completed.
+		 */
+		public void complete(Object result, Throwable throwable) {
+			List<Dispatcher> dispatchers;
+			synchronized (this) {
+				if (done) {
+					return;
+				}
+
+				// no more joins after removal
+				flights.remove(key, this);
+
+				this.result = result;
+				this.throwable = throwable;
+				this.done = true;
+
+				notifyAll();
+
+				dispatchers = this.dispatchers;
+				this.dispatchers = null;
+			}
+
+			for (int d = 0; d < dispatchers.size(); d++) {
+				dispatchers.get(d).stop();
+			}
+		}
+
+		/**
+		 * Wait for completion of this flight.
+		 */
+		public void join() throws Throwable {
+			if (SwingUtilities.isEventDispatchThread()) {
+				Dispatcher dispatcher = dispatcherFactory.createDispatcher();
+				synchronized (this) {
+					if (done) {
+						return;
+					}
+					dispatchers.add(dispatcher);
+				}
+				dispatcher.start();
+			} else {
+				boolean interrupted = false;
+				synchronized (this) {
+					while (!done) {
+						try {
+							wait();
+						} catch (InterruptedException ex) {
+							interrupted = true;
+						}
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The invocation leading a flight, completing it as soon as evaluated.
+	 */
+	private static class Leading extends DelegatingInvocation {
+
+		private Flight flight;
+
+		public Leading(Invocation invocation, Flight flight) {
+			super(invocation);
+
+			this.flight = flight;
+		}
+
+		public void evaluate() {
+			super.evaluate();
+
+			// don't wait for the leader to return, it might be nested in a
+			// waiting invocation on the EDT
+			flight.complete(getResult(), getThrowable());
+		}
+	}
+}
@@ -18,29 +18,101 @@
  */
 package spin.off;
 
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
 import javax.swing.SwingUtilities;
 
 import spin.Invocation;
 import spin.Evaluator;
+import spin.MethodTable;
+import spin.annotation.Timeout;
 
 /**
  * An evaluator for spin-off, i.e. all invocations are evaluated on another
  * thread than the EDT while further events are dispatched.
+ * <p>
+ * Optionally the EDT spins briefly waiting for an invocation to complete,
+ * before it starts to dispatch events. Invocations completing within this
+ * time avoid the overhead of a nested dispatching entirely. The time to spin
+ * is adapted to the average duration of recent invocations and is bounded by
+ * {@link #setSpinTime(long)} - if recent invocations took longer, the EDT
+ * starts dispatching immediately.
+ * </p>
+ * <p>
+ * An invocation not completing within its timeout is abandoned: the EDT stops
+ * dispatching with a {@link SpinOffTimeoutException} and the evaluating
+ * thread is interrupted. In-flight invocations can be abandoned with a
+ * {@link CancellationException} too, e.g. from the action of a cancel button.
+ * </p>
+ * <p>
+ * Invocations of methods declared to return a {@link Future},
+ * {@link CompletionStage} or {@link CompletableFuture} don't dispatch events
+ * at all: a <code>CompletableFuture</code> is returned immediately, which is
+ * completed on the EDT once the method has been evaluated. Thus callbacks
+ * registered on it are notified on the EDT too. Timeouts and cancellation
+ * apply to these invocations as well: the future completes with the
+ * exception and the evaluating thread is interrupted - just as if the
+ * returned future is cancelled.
+ * </p>
  * 
  * @see spin.off.Starter
  * @see spin.off.DispatcherFactory
+ * @see #setTimeout(long)
+ * @see #cancel()
  */
 public class SpinOffEvaluator extends Evaluator {
 
 	/**
 	 * Default factory of dispatchers.
 	 */
-	private static DispatcherFactory defaultDispatcherFactory = new AWTReflectDispatcherFactory();
+	private static DispatcherFactory defaultDispatcherFactory = new SecondaryLoopDispatcherFactory();
+
+	/**
+	 * Default starter for asynchronous evaluation, virtual threads if
+	 * supported - these are daemons in contrast to threads of
+	 * {@link SimpleStarter}.
+	 */
+	private static Starter defaultStarter = VirtualThreadStarter
+			.isSupported() ? (Starter) new VirtualThreadStarter()
+			: new SimpleStarter();
+
+	/**
+	 * Default maximum nanoseconds to spin.
+	 */
+	private static long defaultSpinTime = 0;
+
+	/**
+	 * Default milliseconds to wait for completion.
+	 */
+	private static long defaultTimeout = 0;
 
 	/**
-	 * Default starter for asynchronous evaluation.
+	 * Timeouts of classes, containing annotated methods only.
 	 */
-	private static Starter defaultStarter = new SimpleStarter();
+	private static final MethodTable<Long> timeouts = new MethodTable<Long>() {
+		protected Long getValue(Method method, AnnotatedElement element) {
+			Timeout timeout = element.getAnnotation(Timeout.class);
+			if (timeout == null) {
+				return null;
+			}
+			return Long.valueOf(timeout.value());
+		}
+	};
 
 	/**
 	 * The factory of dispatchers.
@@ -52,6 +124,34 @@ public class SpinOffEvaluator extends Evaluator {
 	 */
 	private Starter starter;
 
+	/**
+	 * Maximum nanoseconds to spin before dispatching.
+	 */
+	private volatile long spinTime = defaultSpinTime;
+
+	/**
+	 * Average nanoseconds of recent evaluations, including the latency of
+	 * the starter.
+	 */
+	private volatile long averageTime;
+
+	/**
+	 * Milliseconds to wait for completion.
+	 */
+	private volatile long timeout = defaultTimeout;
+
+	/**
+	 * Invocations currently spun off.
+	 */
+	private Set<SpinOff> inFlight = Collections
+			.newSetFromMap(new ConcurrentHashMap<SpinOff, Boolean>());
+
+	/**
+	 * Invocations of future methods currently spun off.
+	 */
+	private Set<AsyncSpinOff> asyncInFlight = Collections
+			.newSetFromMap(new ConcurrentHashMap<AsyncSpinOff, Boolean>());
+
 	/**
 	 * Create an evaluator for spin-off using the default dispatcherFactory and
 	 * starter.
@@ -107,18 +207,57 @@ public class SpinOffEvaluator extends Evaluator {
 	public final void evaluate(final Invocation invocation) throws Throwable {
 
 		if (SwingUtilities.isEventDispatchThread()) {
-			final Dispatcher dispatcher = dispatcherFactory.createDispatcher();
+			if (isFuture(invocation.getMethod().getReturnType())) {
+				AsyncSpinOff spinOff = new AsyncSpinOff(invocation);
 
-			starter.start(new Runnable() {
-				public void run() {
-					invocation.evaluate();
+				long timeout = getTimeout(invocation.getMethod());
+				asyncInFlight.add(spinOff);
+				if (timeout > 0) {
+					spinOff.schedule(timeout);
+				}
 
-					dispatcher.stop();
+				starter.start(spinOff);
+				invocation.setResult(spinOff.future);
+				return;
+			}
+
+			SpinOff spinOff = new SpinOff(invocation);
+
+			boolean dispatching = false;
+			long budget = getSpinBudget();
+			if (budget == 0) {
+				dispatching = spinOff.dispatch(dispatcherFactory
+						.createDispatcher());
+			}
+
+			long timeout = getTimeout(invocation.getMethod());
+			inFlight.add(spinOff);
+			try {
+				if (timeout > 0) {
+					spinOff.schedule(timeout);
 				}
-			});
 
-			dispatcher.start();
+				if (budget > 0) {
+					// include the starter's latency in the recorded duration
+					spinOff.started = System.nanoTime();
+				}
+				starter.start(spinOff);
+
+				// dispatch unless completed or cancelled in the meantime
+				if (budget > 0 && !spinOff.await(budget)) {
+					dispatching = spinOff.dispatch(createDispatcher(spinOff));
+				}
+				if (dispatching) {
+					spinOff.dispatcher.start();
+				}
+			} finally {
+				inFlight.remove(spinOff);
+				spinOff.unschedule();
+			}
 
+			if (spinOff.isCancelled()) {
+				throw spinOff.cancellation;
+			}
 			if (!invocation.isEvaluated()) {
 				throw new Error("dispatcher stopped prematurely");
 			}
@@ -127,6 +266,166 @@ public class SpinOffEvaluator extends Evaluator {
 		}
 	}
 
+	/**
+	 * Create a dispatcher for an already started invocation.
+	 * 
+	 * @param spinOff
+	 *            invocation to cancel if no dispatcher can be created
+	 * @return dispatcher or <code>null</code> if completed or cancelled
+	 *         meanwhile
+	 */
+	private Dispatcher createDispatcher(SpinOff spinOff) {
+		if (!spinOff.isRunning()) {
+			// completed right after spinning
+			return null;
+		}
+		try {
+			return dispatcherFactory.createDispatcher();
+		} catch (RuntimeException ex) {
+			if (spinOff.cancel(new CancellationException(ex.getMessage()))) {
+				throw ex;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Test if the given type is a future, i.e. it can be assigned a
+	 * <code>CompletableFuture</code>.
+	 */
+	static boolean isFuture(Class<?> type) {
+		return type == Future.class || type == CompletionStage.class
+				|| type == CompletableFuture.class;
+	}
+
+	/**
+	 * Get the nanoseconds to spin for the next invocation.
+	 * 
+	 * @return nanoseconds to spin, <code>0</code> for immediate dispatching
+	 */
+	private long getSpinBudget() {
+		long spinTime = this.spinTime;
+		if (spinTime == 0) {
+			return 0;
+		}
+
+		long averageTime = this.averageTime;
+		if (averageTime == 0) {
+			// no evaluations yet
+			return spinTime;
+		} else if (averageTime > spinTime) {
+			return 0;
+		} else {
+			return Math.min(spinTime, 2 * averageTime);
+		}
+	}
+
+	/**
+	 * Record the duration of an evaluation.
+	 * 
+	 * @param time
+	 *            nanoseconds of the evaluation
+	 */
+	private void record(long time) {
+		long averageTime = this.averageTime;
+		if (averageTime == 0) {
+			this.averageTime = Math.max(1, time);
+		} else {
+			// exponential moving average, concurrent updates may get lost
+			this.averageTime = Math.max(1, averageTime + (time - averageTime)
+					/ 8);
+		}
+	}
+
+	/**
+	 * Get the milliseconds to wait for completion of the given method.
+	 * 
+	 * @param method
+	 *            method to get timeout for
+	 * @return milliseconds, <code>0</code> for no timeout
+	 */
+	private long getTimeout(Method method) {
+		Long timeout = timeouts.get(method);
+		if (timeout == null) {
+			return this.timeout;
+		}
+		return timeout.longValue();
+	}
+
+	/**
+	 * Cancel all invocations currently spun off with this evaluator - the EDT
+	 * stops dispatching for each of them with a
+	 * <code>CancellationException</code>, returned futures complete with it
+	 * and the evaluating threads are interrupted.
+	 * 
+	 * @return number of cancelled invocations
+	 */
+	public int cancel() {
+		int count = 0;
+		SpinOff[] spinOffs = inFlight.toArray(new SpinOff[0]);
+		for (int s = 0; s < spinOffs.length; s++) {
+			if (spinOffs[s].cancel(new CancellationException(
+					"invocation cancelled"))) {
+				count++;
+			}
+		}
+		AsyncSpinOff[] asyncSpinOffs = asyncInFlight
+				.toArray(new AsyncSpinOff[0]);
+		for (int s = 0; s < asyncSpinOffs.length; s++) {
+			if (asyncSpinOffs[s].cancel(new CancellationException(
+					"invocation cancelled"))) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Get the milliseconds to wait for completion of invocations.
+	 * 
+	 * @return milliseconds, <code>0</code> for no timeout
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Set the milliseconds to wait for completion of invocations. Methods
+	 * annotated with {@link Timeout} use their own timeout instead.
+	 * 
+	 * @param timeout
+	 *            milliseconds, <code>0</code> for no timeout
+	 */
+	public void setTimeout(long timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("timeout must not be negative");
+		}
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Get the maximum nanoseconds to spin before dispatching.
+	 * 
+	 * @return nanoseconds to spin
+	 */
+	public long getSpinTime() {
+		return spinTime;
+	}
+
+	/**
+	 * Set the maximum nanoseconds to spin before dispatching, e.g.
+	 * <code>1000000</code> to wait up to a millisecond for short invocations.
+	 * 
+	 * @param spinTime
+	 *            nanoseconds to spin, <code>0</code> to dispatch immediately
+	 */
+	public void setSpinTime(long spinTime) {
+		if (spinTime < 0) {
+			throw new IllegalArgumentException("spinTime must not be negative");
+		}
+		this.spinTime = spinTime;
+	}
+
 	/**
 	 * Get the default dispatcher factory.
 	 * 
@@ -165,4 +464,431 @@ public class SpinOffEvaluator extends Evaluator {
 	public static void setDefaultStarter(Starter starter) {
 		SpinOffEvaluator.defaultStarter = starter;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Get the default maximum nanoseconds to spin.
+	 * 
+	 * @return default nanoseconds to spin
+	 */
+	public static long getDefaultSpinTime() {
+		return defaultSpinTime;
+	}
+
+	/**
+	 * Set the default maximum nanoseconds to spin.
+	 * 
+	 * @param spinTime
+	 *            nanoseconds to spin, <code>0</code> to dispatch immediately
+	 * @see #setSpinTime(long)
+	 */
+	public static void setDefaultSpinTime(long spinTime) {
+		if (spinTime < 0) {
+			throw new IllegalArgumentException("spinTime must not be negative");
+		}
+		SpinOffEvaluator.defaultSpinTime = spinTime;
+	}
+
+	/**
+	 * Get the default milliseconds to wait for completion.
+	 * 
+	 * @return default milliseconds
+	 */
+	public static long getDefaultTimeout() {
+		return defaultTimeout;
+	}
+
+	/**
+	 * Set the default milliseconds to wait for completion.
+	 * 
+	 * @param timeout
+	 *            milliseconds, <code>0</code> for no timeout
+	 * @see #setTimeout(long)
+	 */
+	public static void setDefaultTimeout(long timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("timeout must not be negative");
+		}
+		SpinOffEvaluator.defaultTimeout = timeout;
+	}
+
+	/**
+	 * Holder of the scheduler of timeouts, created on first use only.
+	 */
+	private static class Timeouts {
+
+		static final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(
+				1, new SpinThreadFactory(true));
+
+		static {
+			scheduler.setRemoveOnCancelPolicy(true);
+		}
+	}
+
+	/**
+	 * The handoff of a single invocation between the EDT and the thread
+	 * evaluating it.
+	 */
+	private class SpinOff implements Runnable {
+
+		private static final int RUNNING = 0;
+
+		private static final int DISPATCHING = 1;
+
+		private static final int DONE = 2;
+
+		private static final int CANCELLED = 3;
+
+		private Invocation invocation;
+
+		private Thread edt;
+
+		private AtomicInteger state = new AtomicInteger(RUNNING);
+
+		private volatile Dispatcher dispatcher;
+
+		/**
+		 * The thread evaluating the invocation.
+		 */
+		private Thread worker;
+
+		private ScheduledFuture<?> timeout;
+
+		/**
+		 * Nanotime of handing the invocation to the starter, <code>0</code> if
+		 * not spinning.
+		 */
+		private long started;
+
+		/**
+		 * The exception of the winning cancellation, written before the
+		 * state is changed to cancelled.
+		 */
+		private volatile CancellationException cancellation;
+
+		public SpinOff(Invocation invocation) {
+			this.invocation = invocation;
+
+			this.edt = Thread.currentThread();
+		}
+
+		/**
+		 * Evaluate the invocation - called on the starter's thread.
+		 */
+		public void run() {
+			synchronized (this) {
+				if (state.get() == CANCELLED) {
+					return;
+				}
+				worker = Thread.currentThread();
+			}
+
+			try {
+				invocation.evaluate();
+
+				if (started != 0) {
+					record(System.nanoTime() - started);
+				}
+			} finally {
+				synchronized (this) {
+					worker = null;
+
+					if (state.get() == CANCELLED) {
+						// don't leak the interrupt to the next runnable
+						Thread.interrupted();
+					}
+				}
+			}
+
+			while (true) {
+				int current = state.get();
+				if (current == CANCELLED) {
+					break;
+				}
+				if (state.compareAndSet(current, DONE)) {
+					wake(current);
+					break;
+				}
+			}
+		}
+
+		/**
+		 * Wait for completion or cancellation of the invocation.
+		 * 
+		 * @param nanos
+		 *            nanoseconds to wait at most
+		 * @return <code>true</code> if completed or cancelled
+		 */
+		public boolean await(long nanos) {
+			long deadline = System.nanoTime() + nanos;
+			while (state.get() == RUNNING) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				LockSupport.parkNanos(this, remaining);
+			}
+			return true;
+		}
+
+		/**
+		 * Switch to dispatching with the given dispatcher.
+		 * 
+		 * @param dispatcher
+		 *            dispatcher to stop on completion, may be
+		 *            <code>null</code>
+		 * @return <code>false</code> if already completed or cancelled or no
+		 *         dispatcher is given
+		 */
+		public boolean dispatch(Dispatcher dispatcher) {
+			if (dispatcher == null) {
+				return false;
+			}
+			this.dispatcher = dispatcher;
+
+			return state.compareAndSet(RUNNING, DISPATCHING);
+		}
+
+		/**
+		 * Schedule cancellation after the given timeout.
+		 * 
+		 * @param millis
+		 *            milliseconds to wait for completion
+		 */
+		public void schedule(final long millis) {
+			timeout = Timeouts.scheduler.schedule(new Runnable() {
+				public void run() {
+					cancel(new SpinOffTimeoutException(millis));
+				}
+			}, millis, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Unschedule a pending cancellation.
+		 */
+		public void unschedule() {
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+		}
+
+		/**
+		 * Test if the invocation is still running without dispatching.
+		 * 
+		 * @return <code>true</code> if running
+		 */
+		public boolean isRunning() {
+			return state.get() == RUNNING;
+		}
+
+		/**
+		 * Test if the invocation was cancelled.
+		 * 
+		 * @return <code>true</code> if cancelled
+		 */
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+
+		/**
+		 * Cancel the invocation unless already completed or cancelled.
+		 * 
+		 * @param cancellation
+		 *            exception to throw on the EDT
+		 * @return <code>true</code> if cancelled
+		 */
+		public boolean cancel(CancellationException cancellation) {
+			int current;
+			synchronized (this) {
+				// concurrent cancellations claim and change the state in turn
+				while (true) {
+					current = state.get();
+					if (current == DONE || current == CANCELLED) {
+						return false;
+					}
+
+					// only ever thrown if the state changes to cancelled
+					this.cancellation = cancellation;
+					if (state.compareAndSet(current, CANCELLED)) {
+						break;
+					}
+				}
+
+				if (worker != null) {
+					worker.interrupt();
+				}
+			}
+
+			wake(current);
+			return true;
+		}
+
+		/**
+		 * Wake up the EDT after leaving the given state.
+		 * 
+		 * @param previous
+		 *            the previous state
+		 */
+		private void wake(int previous) {
+			if (previous == DISPATCHING) {
+				Dispatcher dispatcher = this.dispatcher;
+				if (dispatcher != null) {
+					dispatcher.stop();
+				}
+			} else {
+				LockSupport.unpark(edt);
+			}
+		}
+	}
+
+	/**
+	 * An invocation evaluated on the starter's thread, completing a future on
+	 * the EDT.
+	 */
+	private class AsyncSpinOff extends Invocation implements Runnable {
+
+		private static final int RUNNING = 0;
+
+		private static final int DONE = 1;
+
+		private static final int CANCELLED = 2;
+
+		private CompletableFuture<Object> future = new CompletableFuture<Object>();
+
+		private AtomicInteger state = new AtomicInteger(RUNNING);
+
+		/**
+		 * The thread evaluating the invocation.
+		 */
+		private Thread worker;
+
+		private volatile ScheduledFuture<?> timeout;
+
+		public AsyncSpinOff(Invocation invocation) {
+			super(invocation.getObject(), invocation.getMethod(), invocation
+					.getArguments());
+
+			future.whenComplete(new BiConsumer<Object, Throwable>() {
+				public void accept(Object result, Throwable throwable) {
+					if (future.isCancelled()) {
+						// possibly cancelled by the caller
+						cancel(null);
+					}
+
+					asyncInFlight.remove(AsyncSpinOff.this);
+					if (timeout != null) {
+						timeout.cancel(false);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Schedule cancellation after the given timeout.
+		 * 
+		 * @param millis
+		 *            milliseconds to wait for completion
+		 */
+		public void schedule(final long millis) {
+			timeout = Timeouts.scheduler.schedule(new Runnable() {
+				public void run() {
+					cancel(new SpinOffTimeoutException(millis));
+				}
+			}, millis, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Cancel the invocation unless already completed or cancelled.
+		 * 
+		 * @param cancellation
+		 *            exception to complete the future with, <code>null</code>
+		 *            if already completed
+		 * @return <code>true</code> if cancelled
+		 */
+		public boolean cancel(final CancellationException cancellation) {
+			if (!state.compareAndSet(RUNNING, CANCELLED)) {
+				return false;
+			}
+
+			synchronized (this) {
+				if (worker != null) {
+					worker.interrupt();
+				}
+			}
+
+			if (cancellation != null) {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						future.completeExceptionally(cancellation);
+					}
+				});
+			}
+			return true;
+		}
+
+		/**
+		 * Evaluate the invocation - called on the starter's thread.
+		 */
+		public void run() {
+			synchronized (this) {
+				if (state.get() == CANCELLED) {
+					return;
+				}
+				worker = Thread.currentThread();
+			}
+
+			try {
+				evaluate();
+
+				if (getThrowable() != null) {
+					complete(null, getThrowable());
+				} else if (getResult() instanceof CompletionStage) {
+					((CompletionStage<?>) getResult())
+							.whenComplete(new BiConsumer<Object, Throwable>() {
+								public void accept(Object result,
+										Throwable throwable) {
+									complete(result, throwable);
+								}
+							});
+				} else if (getResult() instanceof Future) {
+					try {
+						complete(((Future<?>) getResult()).get(), null);
+					} catch (ExecutionException ex) {
+						complete(null, ex.getCause());
+					} catch (Throwable throwable) {
+						complete(null, throwable);
+					}
+				} else {
+					complete(getResult(), null);
+				}
+			} finally {
+				synchronized (this) {
+					worker = null;
+
+					if (state.get() == CANCELLED) {
+						// don't leak the interrupt to the next runnable
+						Thread.interrupted();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Complete the future on the EDT unless cancelled meanwhile.
+		 */
+		private void complete(final Object result, final Throwable throwable) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					if (!state.compareAndSet(RUNNING, DONE)) {
+						return;
+					}
+
+					if (throwable != null) {
+						future.completeExceptionally(throwable);
+					} else {
+						future.complete(result);
+					}
+				}
+			});
+		}
+	}
+}
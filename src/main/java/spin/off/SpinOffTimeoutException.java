@@ -0,0 +1,56 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Exception signaling an invocation spun off the EDT that didn't complete
+ * within its timeout.
+ * 
+ * @see SpinOffEvaluator#setTimeout(long)
+ * @see spin.annotation.Timeout
+ */
+public class SpinOffTimeoutException extends CancellationException {
+
+	private static final long serialVersionUID = 1L;
+
+	private long timeout;
+
+	/**
+	 * Create an exception.
+	 * 
+	 * @param timeout
+	 *            the exceeded timeout in milliseconds
+	 */
+	public SpinOffTimeoutException(long timeout) {
+		super("timeout of " + timeout + "ms exceeded");
+
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Get the exceeded timeout.
+	 * 
+	 * @return milliseconds
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A factory of threads for <em>Spin</em>. All threads are members of the
+ * "spin" thread group and are numbered consecutively as "Spin-N".
+ * 
+ * @see SimpleStarter
+ * @see PooledStarter
+ */
+public class SpinThreadFactory implements ThreadFactory {
+
+	/**
+	 * The threadGroup used for all threads.
+	 */
+	private static final ThreadGroup threadGroup = new ThreadGroup("spin");
+
+	/**
+	 * For autonumbering anonymous threads.
+	 */
+	private static int threadNumber;
+
+	/**
+	 * Should created threads be daemons.
+	 */
+	private boolean daemon;
+
+	/**
+	 * Create a factory of non-daemon threads.
+	 */
+	public SpinThreadFactory() {
+		this(false);
+	}
+
+	/**
+	 * Create a factory of threads.
+	 * 
+	 * @param daemon
+	 *            should created threads be daemons
+	 */
+	public SpinThreadFactory(boolean daemon) {
+		this.daemon = daemon;
+	}
+
+	/**
+	 * Get the next thread number.
+	 * 
+	 * @return next thread number
+	 */
+	static synchronized int nextThreadNumber() {
+		return threadNumber++;
+	}
+
+	/**
+	 * Create a new thread for the given runnable.
+	 * 
+	 * @param runnable
+	 *            runnable to run
+	 * @return new thread
+	 */
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(threadGroup, runnable, "Spin-"
+				+ nextThreadNumber());
+		thread.setDaemon(daemon);
+		return thread;
+	}
+}
@@ -28,6 +28,11 @@ package spin.off;
  * <pre>
  * new Thread(runnable).start()
  * </pre>
+ * 
+ * @see SimpleStarter
+ * @see PooledStarter
+ * @see VirtualThreadStarter
+ * @see ExecutorStarter
  */
 public interface Starter {
 
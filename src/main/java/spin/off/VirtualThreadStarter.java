@@ -0,0 +1,104 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Implementation of a <code>Starter</code> that starts each runnable on a new
+ * virtual thread - used as default by <em>Spin</em> if the runtime supports
+ * virtual threads (Java 21 and later). <br>
+ * Virtual threads are cheap to create and to block, thus many concurrent
+ * spin-offs waiting on remote calls or I/O do not tie up platform threads.
+ * Threads are named "Spin-N" like threads of all other starters, but being
+ * virtual they are not members of the "spin" thread group.
+ * <p>
+ * Note that virtual threads are always daemons, i.e. in contrast to the
+ * threads of {@link SimpleStarter} a running spin-off does not keep the JVM
+ * alive. Applications relying on this can restore the former default with
+ * <code>SpinOffEvaluator.setDefaultStarter(new SimpleStarter())</code>.
+ * </p>
+ * 
+ * @see #isSupported()
+ * @see SimpleStarter
+ */
+public class VirtualThreadStarter implements Starter {
+
+	/**
+	 * Factory of virtual threads, <code>null</code> if not supported.
+	 */
+	private static final ThreadFactory virtualFactory = createVirtualFactory();
+
+	/**
+	 * Create a starter of virtual threads.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the runtime does not support virtual threads
+	 * @see #isSupported()
+	 */
+	public VirtualThreadStarter() {
+		if (virtualFactory == null) {
+			throw new IllegalStateException("virtual threads not supported");
+		}
+	}
+
+	/**
+	 * Start a runnable asynchronously on a new virtual thread.
+	 * 
+	 * @param runnable
+	 *            runnable to start
+	 */
+	public void start(Runnable runnable) {
+		Thread thread = virtualFactory.newThread(runnable);
+		thread.setName("Spin-" + SpinThreadFactory.nextThreadNumber());
+		thread.start();
+	}
+
+	/**
+	 * Test if the runtime supports virtual threads.
+	 * 
+	 * @return <code>true</code> if virtual threads are supported
+	 */
+	public static boolean isSupported() {
+		return virtualFactory != null;
+	}
+
+	/**
+	 * Create a factory of virtual threads. <br>
+	 * Uses reflection to <code>Thread.ofVirtual().factory()</code> once, so
+	 * <em>Spin</em> still runs on older runtimes.
+	 * 
+	 * @return factory or <code>null</code> if virtual threads are not
+	 *         supported
+	 */
+	private static ThreadFactory createVirtualFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual", new Class<?>[0])
+					.invoke(null, new Object[0]);
+
+			Method factory = Class.forName("java.lang.Thread$Builder")
+					.getMethod("factory", new Class<?>[0]);
+
+			return (ThreadFactory) factory.invoke(builder, new Object[0]);
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+}
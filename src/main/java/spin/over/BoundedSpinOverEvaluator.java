@@ -0,0 +1,251 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import spin.Invocation;
+
+/**
+ * An evaluator for spin-over, which bounds the number of queued invocations.
+ * <br>
+ * Fast producers can no longer queue unbounded work for a slow EDT: once the
+ * capacity is reached, new invocations are handled according to a
+ * {@link Policy}. The bound applies to all proxies using this evaluator, thus
+ * share an instance for a global bound or create one per proxy.
+ * <p>
+ * Futures returned for dropped invocations are cancelled.
+ * </p>
+ * 
+ * @see #getQueueDepth()
+ * @see #getDroppedCount()
+ * @see #onDropped(Invocation)
+ */
+public class BoundedSpinOverEvaluator extends ConflatingSpinOverEvaluator {
+
+	/**
+	 * Policies for invocations arriving while the queue is full.
+	 */
+	public static enum Policy {
+		/**
+		 * Block the producer until the queue has room again. An interrupted
+		 * producer drops its invocation.
+		 */
+		BLOCK,
+
+		/**
+		 * Drop the oldest queued invocation.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Drop the new invocation.
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * Conflate the new invocation with a pending one, blocking the
+		 * producer if none can be superseded.
+		 * 
+		 * @see ConflatingSpinOverEvaluator
+		 */
+		CONFLATE
+	}
+
+	private int capacity;
+
+	private Policy policy;
+
+	/**
+	 * Permits for queued invocations.
+	 */
+	private Semaphore permits;
+
+	private AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Create an evaluator with the default maximum batch size.
+	 * 
+	 * @param capacity
+	 *            maximum number of queued invocations
+	 * @param policy
+	 *            policy for a full queue
+	 */
+	public BoundedSpinOverEvaluator(int capacity, Policy policy) {
+		this(capacity, policy, DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param capacity
+	 *            maximum number of queued invocations
+	 * @param policy
+	 *            policy for a full queue
+	 * @param maxBatchSize
+	 *            maximum number of invocations evaluated by a single drain
+	 */
+	public BoundedSpinOverEvaluator(int capacity, Policy policy,
+			int maxBatchSize) {
+		super(maxBatchSize);
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		if (policy == null) {
+			throw new IllegalArgumentException("policy must not be null");
+		}
+		this.capacity = capacity;
+		this.policy = policy;
+		this.permits = new Semaphore(capacity);
+	}
+
+	/**
+	 * Get the maximum number of queued invocations.
+	 * 
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get the policy for a full queue.
+	 * 
+	 * @return policy
+	 */
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Get the current number of queued invocations.
+	 * 
+	 * @return queue depth
+	 */
+	public int getQueueDepth() {
+		return capacity - permits.availablePermits();
+	}
+
+	/**
+	 * Get the number of invocations dropped so far.
+	 * 
+	 * @return number of dropped invocations
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Queue the invocation according to the policy.
+	 */
+	protected void enqueue(Invocation invocation) {
+		if (isConflating(invocation)) {
+			if (conflate(invocation, false)) {
+				return;
+			}
+			if (!acquire(invocation)) {
+				return;
+			}
+			if (conflate(invocation, true)) {
+				// superseded one queued meanwhile
+				permits.release();
+			}
+			return;
+		}
+
+		switch (policy) {
+		case DROP_NEWEST:
+			if (!permits.tryAcquire()) {
+				drop(invocation);
+				return;
+			}
+			break;
+		case DROP_OLDEST:
+			while (!permits.tryAcquire()) {
+				// take over the permit of the oldest
+				Invocation oldest = super.poll();
+				if (oldest != null) {
+					drop(oldest);
+					break;
+				}
+			}
+			break;
+		default:
+			if (!acquire(invocation)) {
+				return;
+			}
+		}
+		super.enqueue(invocation);
+	}
+
+	/**
+	 * Acquire a permit, blocking if necessary.
+	 * 
+	 * @return <code>false</code> if interrupted and the invocation dropped
+	 */
+	private boolean acquire(Invocation invocation) {
+		try {
+			permits.acquire();
+			return true;
+		} catch (InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+			drop(invocation);
+			return false;
+		}
+	}
+
+	/**
+	 * Poll the next invocation and release its permit.
+	 */
+	protected Invocation poll() {
+		Invocation invocation = super.poll();
+		if (invocation != null) {
+			permits.release();
+		}
+		return invocation;
+	}
+
+	/**
+	 * Conflate only with the {@link Policy#CONFLATE} policy.
+	 */
+	protected boolean isConflating(Invocation invocation) {
+		return policy == Policy.CONFLATE && super.isConflating(invocation);
+	}
+
+	private void drop(Invocation invocation) {
+		dropped.incrementAndGet();
+
+		if (invocation instanceof FutureInvocation) {
+			((FutureInvocation) invocation).cancel();
+		}
+
+		onDropped(invocation);
+	}
+
+	/**
+	 * Hook method notified of each dropped invocation.
+	 * 
+	 * @param invocation
+	 *            the dropped invocation that will not be evaluated
+	 */
+	protected void onDropped(Invocation invocation) {
+	}
+}
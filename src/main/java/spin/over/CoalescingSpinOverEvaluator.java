@@ -0,0 +1,177 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import spin.Invocation;
+
+/**
+ * An evaluator for spin-over, which coalesces invocations into batches. <br>
+ * Invocations are appended to a lock-free queue and at most one drain is
+ * scheduled on the EDT at a time, evaluating all queued invocations in order.
+ * Thus a background thread pushing thousands of updates per second does not
+ * flood the <code>EventQueue</code> with events. To not starve other events,
+ * a single drain evaluates at most the maximum batch size of invocations and
+ * schedules another drain for the remainder. An invocation throwing an
+ * exception is reported to the uncaught exception handler of the EDT, the
+ * drain continues with the remaining invocations.
+ * <p>
+ * Invocations are never waited for, i.e. methods should not return a value.
+ * </p>
+ * 
+ * @see #onDrain(int)
+ */
+public class CoalescingSpinOverEvaluator extends SpinOverEvaluator {
+
+	/**
+	 * Default maximum number of invocations evaluated by a single drain.
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+	/**
+	 * Queue of pending invocations.
+	 */
+	private Queue<Invocation> queue = new ConcurrentLinkedQueue<Invocation>();
+
+	/**
+	 * Is a drain scheduled.
+	 */
+	private AtomicBoolean scheduled = new AtomicBoolean();
+
+	private int maxBatchSize;
+
+	private Runnable drain = new Runnable() {
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * Create an evaluator with the default maximum batch size.
+	 */
+	public CoalescingSpinOverEvaluator() {
+		this(DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param maxBatchSize
+	 *            maximum number of invocations evaluated by a single drain
+	 */
+	public CoalescingSpinOverEvaluator(int maxBatchSize) {
+		super(false);
+
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be positive");
+		}
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Get the maximum number of invocations evaluated by a single drain.
+	 * 
+	 * @return maximum batch size
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Queue the invocation and schedule a drain if necessary.
+	 */
+	protected void invokeLater(Invocation invocation) {
+		enqueue(invocation);
+
+		schedule();
+	}
+
+	/**
+	 * Schedule a drain unless one is already scheduled.
+	 */
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(drain);
+		}
+	}
+
+	/**
+	 * Append an invocation to the queue.
+	 * 
+	 * @param invocation
+	 *            invocation to append
+	 */
+	protected void enqueue(Invocation invocation) {
+		queue.offer(invocation);
+	}
+
+	/**
+	 * Poll the next invocation from the queue.
+	 * 
+	 * @return invocation or <code>null</code> if the queue is empty
+	 */
+	protected Invocation poll() {
+		return queue.poll();
+	}
+
+	/**
+	 * Drain the queue on the EDT.
+	 */
+	private void drain() {
+		int batchSize = 0;
+		try {
+			while (batchSize < maxBatchSize) {
+				Invocation invocation = poll();
+				if (invocation == null) {
+					break;
+				}
+				batchSize++;
+
+				try {
+					invocation.evaluate();
+				} catch (Throwable throwable) {
+					Thread thread = Thread.currentThread();
+					thread.getUncaughtExceptionHandler().uncaughtException(
+							thread, throwable);
+				}
+			}
+		} finally {
+			scheduled.set(false);
+			if (!queue.isEmpty()) {
+				schedule();
+			}
+		}
+
+		onDrain(batchSize);
+	}
+
+	/**
+	 * Hook method notified after each drain.
+	 * 
+	 * @param batchSize
+	 *            number of invocations evaluated by the drain
+	 */
+	protected void onDrain(int batchSize) {
+	}
+}
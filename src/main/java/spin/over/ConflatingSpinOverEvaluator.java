@@ -0,0 +1,228 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.beans.PropertyChangeEvent;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import spin.Invocation;
+
+/**
+ * An evaluator for spin-over, which conflates superseded invocations, i.e.
+ * last value wins. <br>
+ * When an invocation arrives while an earlier one with the same key is still
+ * pending, the earlier one is replaced and never evaluated. The key of an
+ * invocation consists of its object, its method and an optional additional
+ * key - by default the property name of a <code>PropertyChangeEvent</code>
+ * argument. Thus the work on the EDT scales with its dispatching rate rather
+ * than with the rate of producers.
+ * <p>
+ * Only methods without return value are conflated, the order of evaluations
+ * follows the first pending invocation of each key.
+ * </p>
+ * 
+ * @see #getKey(Invocation)
+ * @see #isConflating(Invocation)
+ */
+public class ConflatingSpinOverEvaluator extends CoalescingSpinOverEvaluator {
+
+	/**
+	 * Marker for pending invocations already claimed by a drain.
+	 */
+	private static final Invocation CLAIMED = new Invocation(null, null, null);
+
+	/**
+	 * Pending invocations by key.
+	 */
+	private ConcurrentMap<Key, Pending> pendings = new ConcurrentHashMap<Key, Pending>();
+
+	private AtomicLong superseded = new AtomicLong();
+
+	/**
+	 * Create an evaluator with the default maximum batch size.
+	 */
+	public ConflatingSpinOverEvaluator() {
+		this(DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param maxBatchSize
+	 *            maximum number of invocations evaluated by a single drain
+	 */
+	public ConflatingSpinOverEvaluator(int maxBatchSize) {
+		super(maxBatchSize);
+	}
+
+	/**
+	 * Get the number of invocations superseded so far.
+	 * 
+	 * @return number of superseded invocations
+	 */
+	public long getSupersededCount() {
+		return superseded.get();
+	}
+
+	/**
+	 * Conflate the invocation with a pending one if possible.
+	 */
+	protected void enqueue(Invocation invocation) {
+		if (isConflating(invocation)) {
+			conflate(invocation, true);
+		} else {
+			super.enqueue(invocation);
+		}
+	}
+
+	/**
+	 * Conflate the given invocation with a pending one with the same key.
+	 * 
+	 * @param invocation
+	 *            invocation to conflate
+	 * @param create
+	 *            should the invocation be queued if no one is pending
+	 * @return <code>true</code> if a pending invocation was superseded
+	 */
+	boolean conflate(Invocation invocation, boolean create) {
+		Key key = new Key(invocation.getObject(), invocation.getMethod(),
+				getKey(invocation));
+		while (true) {
+			Pending pending = pendings.get(key);
+			if (pending == null) {
+				if (!create) {
+					return false;
+				}
+				pending = new Pending(key, invocation);
+				if (pendings.putIfAbsent(key, pending) == null) {
+					super.enqueue(pending);
+					return false;
+				}
+			} else {
+				Invocation latest = pending.latest.get();
+				if (latest != CLAIMED
+						&& pending.latest.compareAndSet(latest, invocation)) {
+					superseded.incrementAndGet();
+					onSuperseded(latest);
+					return true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test if the given invocation should be conflated.
+	 * 
+	 * @param invocation
+	 *            invocation to test
+	 * @return <code>true</code> if the method has no return value
+	 */
+	protected boolean isConflating(Invocation invocation) {
+		return invocation.getMethod().getReturnType() == Void.TYPE;
+	}
+
+	/**
+	 * Get the additional key of the given invocation.
+	 * 
+	 * @param invocation
+	 *            invocation to get key for
+	 * @return the property name of the first argument if it is a
+	 *         <code>PropertyChangeEvent</code>, <code>null</code> otherwise
+	 */
+	protected Object getKey(Invocation invocation) {
+		Object[] args = invocation.getArguments();
+		if (args != null && args.length > 0
+				&& args[0] instanceof PropertyChangeEvent) {
+			return ((PropertyChangeEvent) args[0]).getPropertyName();
+		}
+		return null;
+	}
+
+	/**
+	 * Hook method notified of each superseded invocation.
+	 * 
+	 * @param invocation
+	 *            the superseded invocation that will not be evaluated
+	 */
+	protected void onSuperseded(Invocation invocation) {
+	}
+
+	/**
+	 * The key of invocations.
+	 */
+	private static class Key {
+
+		private Object object;
+
+		private Method method;
+
+		private Object key;
+
+		public Key(Object object, Method method, Object key) {
+			this.object = object;
+			this.method = method;
+			this.key = key;
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(object) * 31 + method.hashCode()
+					+ (key == null ? 0 : key.hashCode());
+		}
+
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) other;
+			return this.object == that.object && this.method.equals(that.method)
+					&& (key == null ? that.key == null : key.equals(that.key));
+		}
+	}
+
+	/**
+	 * A pending invocation queued once for its key.
+	 */
+	private class Pending extends Invocation {
+
+		private Key key;
+
+		private AtomicReference<Invocation> latest;
+
+		public Pending(Key key, Invocation invocation) {
+			super(null, null, null);
+
+			this.key = key;
+			this.latest = new AtomicReference<Invocation>(invocation);
+		}
+
+		/**
+		 * Evaluate the latest invocation.
+		 */
+		public void evaluate() {
+			// no new invocations for this pending after removal
+			pendings.remove(key, this);
+
+			latest.getAndSet(CLAIMED).evaluate();
+		}
+	}
+}
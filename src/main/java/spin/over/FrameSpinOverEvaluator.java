@@ -0,0 +1,251 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.Timer;
+
+import spin.Invocation;
+
+/**
+ * An evaluator for spin-over, which releases invocations on the EDT aligned
+ * to a frame rate. <br>
+ * Invocations are queued and evaluated on each tick of a Swing
+ * {@link Timer}, running with the configured frequency while invocations are
+ * pending. Each tick evaluates invocations in order until the queue is empty
+ * or its time budget is exhausted, leftovers are carried over to the next
+ * tick.
+ * <p>
+ * Without waiting invocations return immediately, with waiting the calling
+ * thread is released as soon as its invocation was evaluated. A waiting
+ * thread interrupted before its invocation was evaluated withdraws it.
+ * </p>
+ */
+public class FrameSpinOverEvaluator extends SpinOverEvaluator {
+
+	/**
+	 * Default frequency of ticks.
+	 */
+	public static final int DEFAULT_HZ = 60;
+
+	private Queue<Invocation> queue = new ConcurrentLinkedQueue<Invocation>();
+
+	/**
+	 * Is the timer running.
+	 */
+	private AtomicBoolean running = new AtomicBoolean();
+
+	private Timer timer;
+
+	private long budget;
+
+	/**
+	 * Create an evaluator with the default frequency, not waiting for
+	 * invocations.
+	 */
+	public FrameSpinOverEvaluator() {
+		this(false, DEFAULT_HZ);
+	}
+
+	/**
+	 * Create an evaluator with a time budget of half a tick.
+	 * 
+	 * @param wait
+	 *            should the invocation wait for the evaluation to complete
+	 * @param hz
+	 *            frequency of ticks
+	 */
+	public FrameSpinOverEvaluator(boolean wait, int hz) {
+		this(wait, hz, 1000 * 1000 * 1000 / hz / 2);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param wait
+	 *            should the invocation wait for the evaluation to complete
+	 * @param hz
+	 *            frequency of ticks
+	 * @param budget
+	 *            nanoseconds to evaluate invocations in each tick
+	 */
+	public FrameSpinOverEvaluator(boolean wait, int hz, long budget) {
+		super(wait);
+
+		if (hz < 1 || hz > 1000) {
+			throw new IllegalArgumentException("hz must be between 1 and 1000");
+		}
+		if (budget <= 0) {
+			throw new IllegalArgumentException("budget must be positive");
+		}
+		this.budget = budget;
+
+		timer = new Timer(1000 / hz, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				tick();
+			}
+		});
+		timer.setCoalesce(true);
+	}
+
+	/**
+	 * Get the time budget of each tick.
+	 * 
+	 * @return nanoseconds
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Queue the invocation and wait until it is evaluated.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted before the evaluation started
+	 */
+	protected void invokeAndWait(Invocation invocation) throws Throwable {
+		Waiting waiting = new Waiting(invocation);
+
+		enqueue(waiting);
+
+		boolean interrupted = false;
+		while (!waiting.isDone()) {
+			LockSupport.park(this);
+
+			if (Thread.interrupted()) {
+				if (waiting.cancel()) {
+					queue.remove(waiting);
+
+					throw new InterruptedException();
+				}
+				// already running so wait for completion
+				interrupted = true;
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Queue the invocation.
+	 */
+	protected void invokeLater(Invocation invocation) {
+		enqueue(invocation);
+	}
+
+	private void enqueue(Invocation invocation) {
+		queue.offer(invocation);
+
+		if (running.compareAndSet(false, true)) {
+			timer.start();
+		}
+	}
+
+	/**
+	 * Evaluate queued invocations within the time budget.
+	 */
+	private void tick() {
+		long start = System.nanoTime();
+
+		Invocation invocation;
+		while ((invocation = queue.poll()) != null) {
+			if (invocation instanceof Waiting
+					&& ((Waiting) invocation).isCancelled()) {
+				continue;
+			}
+
+			invocation.evaluate();
+
+			if (System.nanoTime() - start >= budget) {
+				// carry over to next tick
+				return;
+			}
+		}
+
+		timer.stop();
+		running.set(false);
+		if (!queue.isEmpty() && running.compareAndSet(false, true)) {
+			timer.start();
+		}
+	}
+
+	/**
+	 * An invocation releasing its waiting thread after evaluation.
+	 */
+	private static class Waiting extends Invocation {
+
+		private static final int QUEUED = 0;
+
+		private static final int RUNNING = 1;
+
+		private static final int DONE = 2;
+
+		private static final int CANCELLED = 3;
+
+		private AtomicInteger state = new AtomicInteger(QUEUED);
+
+		private Invocation invocation;
+
+		private Thread thread;
+
+		public Waiting(Invocation invocation) {
+			super(null, null, null);
+
+			this.invocation = invocation;
+			this.thread = Thread.currentThread();
+		}
+
+		/**
+		 * Withdraw this invocation unless its evaluation started already.
+		 * 
+		 * @return <code>true</code> if cancelled
+		 */
+		public boolean cancel() {
+			return state.compareAndSet(QUEUED, CANCELLED);
+		}
+
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+
+		public boolean isDone() {
+			return state.get() == DONE;
+		}
+
+		public void evaluate() {
+			if (state.compareAndSet(QUEUED, RUNNING)) {
+				try {
+					invocation.evaluate();
+				} finally {
+					state.set(DONE);
+					LockSupport.unpark(thread);
+				}
+			}
+		}
+	}
+}
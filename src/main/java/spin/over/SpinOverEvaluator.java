@@ -18,6 +18,16 @@
  */
 package spin.over;
 
+import java.awt.Toolkit;
+import java.awt.event.InvocationEvent;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
 import javax.swing.SwingUtilities;
 
 import spin.Invocation;
@@ -25,11 +35,26 @@ import spin.Evaluator;
 
 /**
  * An evaluator for spin-over, i.e. all invocations are evaluated on the EDT.
+ * <br>
+ * Invocations of methods declared to return a {@link Future},
+ * {@link CompletionStage} or {@link CompletableFuture} never block the
+ * calling thread, regardless of waiting: a <code>CompletableFuture</code> is
+ * returned immediately, completing with the result of the method evaluated
+ * on the EDT.
  */
 public class SpinOverEvaluator extends Evaluator {
 
 	private static boolean defaultWait = true;
 
+	/**
+	 * Slots for waiting invocations of each thread.
+	 */
+	private static final ThreadLocal<Slot> slots = new ThreadLocal<Slot>() {
+		protected Slot initialValue() {
+			return new Slot();
+		}
+	};
+
 	private boolean wait;
 
 	/**
@@ -56,28 +81,74 @@ public class SpinOverEvaluator extends Evaluator {
 	 * 
 	 * @param invocation
 	 *            invocation to spin-over
+	 * @see #invokeAndWait(Invocation)
+	 * @see #invokeLater(Invocation)
 	 */
 	public final void evaluate(final Invocation invocation) throws Throwable {
 
 		if (SwingUtilities.isEventDispatchThread()) {
 			invocation.evaluate();
 		} else {
-			Runnable runnable = new Runnable() {
-				public void run() {
-					invocation.evaluate();
-				}
-			};
-			if (wait) {
-				SwingUtilities.invokeAndWait(runnable);
+			if (isFuture(invocation.getMethod().getReturnType())) {
+				CompletableFuture<Object> future = new CompletableFuture<Object>();
+				invokeLater(new FutureInvocation(invocation, future));
+				invocation.setResult(future);
+			} else if (wait) {
+				invokeAndWait(invocation);
 			} else {
 				if (invocation.getMethod().getReturnType() != Void.TYPE) {
 					onInvokeLaterNonVoidReturnType(invocation);
 				}
-				SwingUtilities.invokeLater(runnable);
+				invokeLater(invocation);
 			}
 		}
 	}
 
+	/**
+	 * Evaluate the given invocation on the EDT and wait for its evaluation to
+	 * complete. <br>
+	 * In contrast to <code>SwingUtilities.invokeAndWait()</code> each thread
+	 * reuses a single event for all its invocations and is parked until
+	 * completion, thus no garbage is produced in steady state.
+	 * 
+	 * @param invocation
+	 *            invocation to evaluate
+	 * @throws InterruptedException
+	 *             if interrupted before the evaluation started
+	 */
+	protected void invokeAndWait(Invocation invocation) throws Throwable {
+		Slot slot = slots.get();
+		if (!slot.evaluate(invocation)) {
+			// event is still queued so don't reuse the slot
+			slots.remove();
+
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Evaluate the given invocation on the EDT without waiting for its
+	 * evaluation.
+	 * 
+	 * @param invocation
+	 *            invocation to evaluate
+	 */
+	protected void invokeLater(final Invocation invocation) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				invocation.evaluate();
+			}
+		});
+	}
+
+	/**
+	 * Test if the given type is a future.
+	 */
+	private static boolean isFuture(Class type) {
+		return type == Future.class || type == CompletionStage.class
+				|| type == CompletableFuture.class;
+	}
+
 	/**
 	 * Hook method to handle a non-void return type of a invoked method.
 	 * 
@@ -89,6 +160,15 @@ public class SpinOverEvaluator extends Evaluator {
 		throw new RuntimeException("invokeLater with non-void return type");
 	}
 
+	/**
+	 * Does this evaluator wait for the evaluation of invocations.
+	 * 
+	 * @return <code>true</code> if wait
+	 */
+	public boolean isWait() {
+		return wait;
+	}
+
 	/**
 	 * Should evaluations wait for the invocations.
 	 * 
@@ -107,4 +187,143 @@ public class SpinOverEvaluator extends Evaluator {
 	public static void setDefaultWait(boolean wait) {
 		defaultWait = wait;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * An invocation completing a future with the result of another
+	 * invocation.
+	 */
+	static class FutureInvocation extends Invocation {
+
+		private CompletableFuture<Object> future;
+
+		public FutureInvocation(Invocation invocation,
+				CompletableFuture<Object> future) {
+			super(invocation.getObject(), invocation.getMethod(), invocation
+					.getArguments());
+
+			this.future = future;
+		}
+
+		public void evaluate() {
+			super.evaluate();
+
+			if (getThrowable() != null) {
+				future.completeExceptionally(getThrowable());
+			} else if (getResult() instanceof CompletionStage) {
+				((CompletionStage<?>) getResult())
+						.whenComplete(new BiConsumer<Object, Throwable>() {
+							public void accept(Object result,
+									Throwable throwable) {
+								complete(result, throwable);
+							}
+						});
+			} else if (getResult() instanceof Future) {
+				final Future<?> result = (Future<?>) getResult();
+				if (result.isDone()) {
+					complete(result);
+				} else {
+					// don't block the EDT
+					CompletableFuture.runAsync(new Runnable() {
+						public void run() {
+							complete(result);
+						}
+					});
+				}
+			} else {
+				future.complete(getResult());
+			}
+		}
+
+		/**
+		 * Cancel the future as this invocation will not be evaluated.
+		 */
+		public void cancel() {
+			future.cancel(false);
+		}
+
+		private void complete(Future<?> result) {
+			try {
+				future.complete(result.get());
+			} catch (ExecutionException ex) {
+				future.completeExceptionally(ex.getCause());
+			} catch (Throwable throwable) {
+				future.completeExceptionally(throwable);
+			}
+		}
+
+		private void complete(Object result, Throwable throwable) {
+			if (throwable != null) {
+				future.completeExceptionally(throwable);
+			} else {
+				future.complete(result);
+			}
+		}
+	}
+
+	/**
+	 * A reusable slot for a thread waiting for an invocation on the EDT.
+	 */
+	private static class Slot implements Runnable {
+
+		private static final int IDLE = 0;
+
+		private static final int POSTED = 1;
+
+		private static final int RUNNING = 2;
+
+		private static final int CANCELLED = 3;
+
+		private AtomicInteger state = new AtomicInteger(IDLE);
+
+		private Thread thread = Thread.currentThread();
+
+		private InvocationEvent event = new InvocationEvent(Toolkit
+				.getDefaultToolkit(), this);
+
+		private volatile Invocation invocation;
+
+		/**
+		 * Evaluate the given invocation on the EDT and wait for its
+		 * completion.
+		 * 
+		 * @return <code>false</code> if interrupted before the evaluation
+		 *         started
+		 */
+		public boolean evaluate(Invocation invocation) {
+			this.invocation = invocation;
+			state.set(POSTED);
+			Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(event);
+
+			boolean interrupted = false;
+			while (state.get() != IDLE) {
+				LockSupport.park(this);
+
+				if (Thread.interrupted()) {
+					if (state.compareAndSet(POSTED, CANCELLED)) {
+						this.invocation = null;
+						return false;
+					}
+					// already running so wait for completion
+					interrupted = true;
+				}
+			}
+			this.invocation = null;
+
+			if (interrupted) {
+				thread.interrupt();
+			}
+			return true;
+		}
+
+		public void run() {
+			if (state.compareAndSet(POSTED, RUNNING)) {
+				try {
+					invocation.evaluate();
+				} finally {
+					state.set(IDLE);
+					LockSupport.unpark(thread);
+				}
+			}
+		}
+	}
+}
@@ -19,6 +19,9 @@
 package spin.proxy;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import spin.Evaluator;
 import spin.Invocation;
@@ -34,9 +37,62 @@ import net.sf.cglib.proxy.MethodProxy;
  */
 public class CGLibProxyFactory extends ProxyFactory {
 
+	/**
+	 * Prototypes of proxies for wrapped classes.
+	 */
+	private static final ClassValue<Factory> prototypes = new ClassValue<Factory>() {
+		protected Factory computeValue(Class<?> clazz) {
+			return (Factory) Enhancer.create(clazz, new SpinMethodInterceptor(
+					null, null, null));
+		}
+	};
+
+	/**
+	 * Interface declarations of the methods of wrapped classes.
+	 */
+	private static final ClassValue<Map<Method, Method>> interfaceMethods = new ClassValue<Map<Method, Method>>() {
+		protected Map<Method, Method> computeValue(Class<?> clazz) {
+			return createInterfaceMethods(clazz);
+		}
+	};
+
+	/**
+	 * Proxies are created from a prototype, thus the enhanced class is
+	 * generated or looked up once per wrapped class only.
+	 */
 	public Object createProxy(Object object, Evaluator evaluator) {
-		return Enhancer.create(object.getClass(), new SpinMethodInterceptor(
-				object, evaluator));
+		return prototypes.get(object.getClass()).newInstance(
+				new SpinMethodInterceptor(this, object, evaluator));
+	}
+
+	/**
+	 * Map the methods of the given class to their declarations in the
+	 * implemented interfaces.
+	 */
+	private static Map<Method, Method> createInterfaceMethods(Class<?> clazz) {
+		Map<Method, Method> methods = new HashMap<Method, Method>();
+
+		for (Class<?> type = clazz; type != null; type = type.getSuperclass()) {
+			Class<?>[] interfaces = type.getInterfaces();
+			for (int i = 0; i < interfaces.length; i++) {
+				Method[] declared = interfaces[i].getMethods();
+				for (int m = 0; m < declared.length; m++) {
+					try {
+						Method method = clazz.getMethod(declared[m].getName(),
+								declared[m].getParameterTypes());
+						if (!methods.containsKey(method)) {
+							methods.put(method, declared[m]);
+						}
+					} catch (NoSuchMethodException abstractClass) {
+					}
+				}
+			}
+		}
+
+		if (methods.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(methods);
 	}
 
 	public boolean isProxy(Object object) {
@@ -63,9 +119,13 @@ public class CGLibProxyFactory extends ProxyFactory {
 	}
 
 	/**
-	 * Method interceptor for the <em>Spin</em> proxy.
+	 * Method interceptor for the <em>Spin</em> proxy, passing methods declared
+	 * by interfaces as the interface methods, just like the other factories,
+	 * so they match local methods and routes.
 	 */
-	private class SpinMethodInterceptor implements MethodInterceptor {
+	private static class SpinMethodInterceptor implements MethodInterceptor {
+
+		private CGLibProxyFactory factory;
 
 		private Object object;
 
@@ -74,12 +134,16 @@ public class CGLibProxyFactory extends ProxyFactory {
 		/**
 		 * Create a new handler of invocations.
 		 * 
+		 * @param factory
+		 *            the factory of the proxy
 		 * @param object
 		 *            the object to invoke methods on
 		 * @param evaluator
 		 *            the evaluator of methods
 		 */
-		public SpinMethodInterceptor(Object object, Evaluator evaluator) {
+		public SpinMethodInterceptor(CGLibProxyFactory factory, Object object,
+				Evaluator evaluator) {
+			this.factory = factory;
 			this.object = object;
 			this.evaluator = evaluator;
 		}
@@ -101,7 +165,19 @@ public class CGLibProxyFactory extends ProxyFactory {
 		 */
 		public Object intercept(Object proxy, Method method, Object[] args,
 				MethodProxy methodProxy) throws Throwable {
-			return evaluteInvocation(evaluator, proxy, new Invocation(
+			if (evaluator == null) {
+				// prototype under construction
+				return methodProxy.invokeSuper(proxy, args);
+			}
+
+			// CGLib passes the method of the class
+			Method interfaceMethod = interfaceMethods.get(object.getClass())
+					.get(method);
+			if (interfaceMethod != null) {
+				method = interfaceMethod;
+			}
+
+			return factory.evaluteInvocation(evaluator, proxy, new Invocation(
 					this.object, method, args));
 		}
 	}
@@ -0,0 +1,480 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import spin.Invocation;
+import spin.Invoker;
+
+/**
+ * An invocation on a proxy of the {@link GeneratedProxyFactory}. <br>
+ * Arguments and results are kept unboxed in preallocated slots, boxed
+ * arguments and results are created only if an {@link spin.Evaluator} asks
+ * for them. <br>
+ * Recycling applies only to the invocation handed to the evaluator by the
+ * proxy, and only if exactly this invocation is evaluated: an instance is
+ * reused by the calling thread once it was evaluated and its result was
+ * returned - if the proxy returns before the evaluation, the invocation is
+ * reused once its evaluation completes. Thus evaluators must not access an
+ * invocation after its evaluation completed. <br>
+ * Evaluators that evaluate a copy instead (e.g. asynchronous spin-over, a
+ * forgotten or asynchronous spin-off) or that never evaluate the original at
+ * all (e.g. a conflated or superseded invocation) leave it unevaluated. Such
+ * an invocation is never recycled, it is left to the garbage collector and
+ * the calling thread allocates a new one on its next invocation.<br>
+ * This class is public for access from generated proxies only and is not
+ * intended for use by applications.
+ */
+public final class GeneratedInvocation extends Invocation {
+
+	private GeneratedProxyFactory.ProxyType type;
+
+	/**
+	 * Index of the invoked method.
+	 */
+	int index;
+
+	/**
+	 * Is this invocation currently used by a proxy.
+	 */
+	volatile boolean inUse;
+
+	/**
+	 * Invocation acquired by a proxy and not yet evaluated nor released.
+	 */
+	private static final int ACQUIRED = 0;
+
+	/**
+	 * Invocation evaluated before its release.
+	 */
+	private static final int EVALUATED = 1;
+
+	/**
+	 * Invocation released before its evaluation.
+	 */
+	private static final int RELEASED = 2;
+
+	private static final AtomicIntegerFieldUpdater<GeneratedInvocation> STATE = AtomicIntegerFieldUpdater
+			.newUpdater(GeneratedInvocation.class, "state");
+
+	/**
+	 * Whichever of evaluation and release comes second recycles.
+	 */
+	private volatile int state;
+
+	private long[] primitives;
+
+	private Object[] objects;
+
+	/**
+	 * The boxed arguments, <code>null</code> unless requested.
+	 */
+	private Object[] arguments;
+
+	private long primitiveResult;
+
+	/**
+	 * Is the result of a primitive method available boxed only.
+	 */
+	private boolean boxed;
+
+	/**
+	 * Was the method changed, requiring a reflective evaluation.
+	 */
+	private boolean changed;
+
+	private volatile boolean evaluated;
+
+	/**
+	 * Create an invocation for proxies of the given type.
+	 * 
+	 * @param type
+	 *            type of proxy
+	 */
+	GeneratedInvocation(GeneratedProxyFactory.ProxyType type) {
+		super(null, null, null);
+
+		this.type = type;
+
+		primitives = new long[type.maxParameters];
+		objects = new Object[type.maxParameters];
+	}
+
+	/**
+	 * Prepare for an invocation of the method with the given index.
+	 * 
+	 * @param object
+	 *            object to invoke on
+	 * @param index
+	 *            index of method
+	 */
+	void reset(Object object, int index) {
+		this.index = index;
+
+		setObject(object);
+		super.setMethod(type.methods[index]);
+		super.setArguments(null);
+		super.setResult(null);
+		setThrowable(null);
+
+		arguments = null;
+		boxed = false;
+		changed = false;
+		evaluated = false;
+		state = ACQUIRED;
+	}
+
+	/**
+	 * Release this invocation by its proxy - it is recycled immediately if
+	 * already evaluated, otherwise once its evaluation completes, i.e. never
+	 * if an evaluator does not evaluate this instance.
+	 */
+	void release() {
+		if (!STATE.compareAndSet(this, ACQUIRED, RELEASED)) {
+			recycle();
+		}
+	}
+
+	/**
+	 * Recycle this invocation for reuse by the thread that acquired it.
+	 */
+	private void recycle() {
+		clear();
+		inUse = false;
+	}
+
+	/**
+	 * Release all references held by this invocation.
+	 */
+	void clear() {
+		setObject(null);
+		super.setResult(null);
+		setThrowable(null);
+
+		arguments = null;
+		for (int o = 0; o < objects.length; o++) {
+			objects[o] = null;
+		}
+	}
+
+	/**
+	 * Set an <code>int</code> argument, also used for <code>boolean</code>,
+	 * <code>byte</code>, <code>char</code> and <code>short</code>.
+	 */
+	public void setInt(int position, int value) {
+		primitives[position] = value;
+	}
+
+	/**
+	 * Set a <code>long</code> argument.
+	 */
+	public void setLong(int position, long value) {
+		primitives[position] = value;
+	}
+
+	/**
+	 * Set a <code>float</code> argument.
+	 */
+	public void setFloat(int position, float value) {
+		primitives[position] = Float.floatToRawIntBits(value);
+	}
+
+	/**
+	 * Set a <code>double</code> argument.
+	 */
+	public void setDouble(int position, double value) {
+		primitives[position] = Double.doubleToRawLongBits(value);
+	}
+
+	/**
+	 * Set a reference argument.
+	 */
+	public void setObject(int position, Object value) {
+		objects[position] = value;
+	}
+
+	/**
+	 * Get an <code>int</code> argument.
+	 */
+	public int getInt(int position) {
+		return (int) primitives[position];
+	}
+
+	/**
+	 * Get a <code>long</code> argument.
+	 */
+	public long getLong(int position) {
+		return primitives[position];
+	}
+
+	/**
+	 * Get a <code>float</code> argument.
+	 */
+	public float getFloat(int position) {
+		return Float.intBitsToFloat((int) primitives[position]);
+	}
+
+	/**
+	 * Get a <code>double</code> argument.
+	 */
+	public double getDouble(int position) {
+		return Double.longBitsToDouble(primitives[position]);
+	}
+
+	/**
+	 * Get a reference argument.
+	 */
+	public Object getObject(int position) {
+		return objects[position];
+	}
+
+	/**
+	 * Set an <code>int</code> result.
+	 */
+	public void setResultInt(int result) {
+		primitiveResult = result;
+	}
+
+	/**
+	 * Set a <code>long</code> result.
+	 */
+	public void setResultLong(long result) {
+		primitiveResult = result;
+	}
+
+	/**
+	 * Set a <code>float</code> result.
+	 */
+	public void setResultFloat(float result) {
+		primitiveResult = Float.floatToRawIntBits(result);
+	}
+
+	/**
+	 * Set a <code>double</code> result.
+	 */
+	public void setResultDouble(double result) {
+		primitiveResult = Double.doubleToRawLongBits(result);
+	}
+
+	/**
+	 * Set a reference result.
+	 */
+	public void setResultObject(Object result) {
+		super.setResult(result);
+	}
+
+	/**
+	 * Changing the method switches this invocation to boxed arguments.
+	 */
+	public void setMethod(Method method) {
+		getArguments();
+
+		super.setMethod(method);
+		changed = true;
+	}
+
+	/**
+	 * Arguments are boxed on first request.
+	 */
+	public Object[] getArguments() {
+		if (arguments == null) {
+			Class[] parameters = getMethod().getParameterTypes();
+
+			arguments = new Object[parameters.length];
+			for (int p = 0; p < parameters.length; p++) {
+				arguments[p] = box(parameters[p], primitives[p], objects[p]);
+			}
+		}
+		return arguments;
+	}
+
+	public void setArguments(Object[] arguments) {
+		this.arguments = arguments;
+	}
+
+	/**
+	 * The result of a primitive method is boxed on request.
+	 */
+	public Object getResult() {
+		Class type = getMethod().getReturnType();
+		if (type.isPrimitive() && type != Void.TYPE && !boxed) {
+			return box(type, primitiveResult, null);
+		}
+		return super.getResult();
+	}
+
+	public void setResult(Object result) {
+		super.setResult(result);
+
+		boxed = true;
+	}
+
+	/**
+	 * Evaluate by a call through the generated proxy class - boxed arguments
+	 * are unboxed again. Only if the method was changed or the arguments do
+	 * not match the parameters exactly, it is evaluated by reflection.
+	 */
+	public void evaluate() {
+		if (evaluated) {
+			throw new IllegalStateException("already evaluated");
+		}
+
+		try {
+			if (arguments == null || (!changed && unbox())) {
+				type.evaluate.invokeExact(index, getObject(), this);
+			} else {
+				setResult(Invoker.get(getMethod()).invoke(getObject(),
+						arguments));
+			}
+		} catch (Throwable throwable) {
+			setThrowable(throwable);
+		}
+
+		evaluated = true;
+
+		if (!STATE.compareAndSet(this, ACQUIRED, EVALUATED)) {
+			// proxy returned already
+			recycle();
+		}
+	}
+
+	public boolean isEvaluated() {
+		return evaluated;
+	}
+
+	public Object resultOrThrow() throws Throwable {
+		if (getThrowable() != null) {
+			throw getThrowable();
+		} else {
+			return getResult();
+		}
+	}
+
+	int resultInt() {
+		if (boxed) {
+			Object result = super.getResult();
+			if (result instanceof Boolean) {
+				return ((Boolean) result).booleanValue() ? 1 : 0;
+			} else if (result instanceof Character) {
+				return ((Character) result).charValue();
+			} else {
+				return ((Number) result).intValue();
+			}
+		}
+		return (int) primitiveResult;
+	}
+
+	long resultLong() {
+		if (boxed) {
+			return ((Number) super.getResult()).longValue();
+		}
+		return primitiveResult;
+	}
+
+	float resultFloat() {
+		if (boxed) {
+			return ((Number) super.getResult()).floatValue();
+		}
+		return Float.intBitsToFloat((int) primitiveResult);
+	}
+
+	double resultDouble() {
+		if (boxed) {
+			return ((Number) super.getResult()).doubleValue();
+		}
+		return Double.longBitsToDouble(primitiveResult);
+	}
+
+	Object resultObject() {
+		return super.getResult();
+	}
+
+	/**
+	 * Write the boxed arguments back to the slots.
+	 * 
+	 * @return <code>false</code> if the arguments do not match the parameters
+	 *         exactly, requiring a reflective evaluation
+	 */
+	private boolean unbox() {
+		Class[] parameters = getMethod().getParameterTypes();
+		if (arguments.length != parameters.length) {
+			return false;
+		}
+
+		for (int p = 0; p < parameters.length; p++) {
+			Class parameter = parameters[p];
+			Object argument = arguments[p];
+			if (!parameter.isPrimitive()) {
+				if (argument != null && !parameter.isInstance(argument)) {
+					return false;
+				}
+				objects[p] = argument;
+			} else if (argument == null) {
+				return false;
+			} else if (argument.getClass() == Boolean.class
+					&& parameter == Boolean.TYPE) {
+				primitives[p] = ((Boolean) argument).booleanValue() ? 1 : 0;
+			} else if (argument.getClass() == Character.class
+					&& parameter == Character.TYPE) {
+				primitives[p] = ((Character) argument).charValue();
+			} else if (argument.getClass() == Float.class
+					&& parameter == Float.TYPE) {
+				primitives[p] = Float.floatToRawIntBits(((Float) argument)
+						.floatValue());
+			} else if (argument.getClass() == Double.class
+					&& parameter == Double.TYPE) {
+				primitives[p] = Double.doubleToRawLongBits(((Double) argument)
+						.doubleValue());
+			} else if ((argument.getClass() == Integer.class && parameter == Integer.TYPE)
+					|| (argument.getClass() == Long.class && parameter == Long.TYPE)
+					|| (argument.getClass() == Short.class && parameter == Short.TYPE)
+					|| (argument.getClass() == Byte.class && parameter == Byte.TYPE)) {
+				primitives[p] = ((Number) argument).longValue();
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Object box(Class type, long primitive, Object object) {
+		if (!type.isPrimitive()) {
+			return object;
+		} else if (type == Integer.TYPE) {
+			return Integer.valueOf((int) primitive);
+		} else if (type == Long.TYPE) {
+			return Long.valueOf(primitive);
+		} else if (type == Boolean.TYPE) {
+			return Boolean.valueOf(primitive != 0);
+		} else if (type == Float.TYPE) {
+			return Float.valueOf(Float.intBitsToFloat((int) primitive));
+		} else if (type == Double.TYPE) {
+			return Double.valueOf(Double.longBitsToDouble(primitive));
+		} else if (type == Character.TYPE) {
+			return Character.valueOf((char) primitive);
+		} else if (type == Byte.TYPE) {
+			return Byte.valueOf((byte) primitive);
+		} else {
+			return Short.valueOf((short) primitive);
+		}
+	}
+}
@@ -0,0 +1,650 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import spin.Evaluator;
+import spin.ProxyFactory;
+
+/**
+ * A factory of proxies utilizing classes generated at runtime. <br>
+ * For each class of wrapped objects a proxy class is generated, implementing
+ * all public interfaces with specialized methods. Arguments and results are
+ * passed to {@link Evaluator}s unboxed in {@link GeneratedInvocation}s, that
+ * are reused by each calling thread. Thus a method invocation on such a proxy
+ * does not allocate an <code>Object[]</code> nor box primitives (unless an
+ * evaluator asks for the arguments). Boxed
+ * arguments are unboxed again for the call through the generated class, only
+ * invocations whose method or arguments were changed incompatibly by an
+ * evaluator are evaluated by reflection. <br>
+ * On Java 15 and later proxy classes are defined as hidden classes, on older
+ * platforms or if an interface is not visible to the class loader of
+ * <em>Spin</em>, they are defined by a dedicated class loader. <br>
+ * For classes whose interfaces cannot be implemented this way (e.g.
+ * non-public types in method signatures) proxies are created by a
+ * {@link JDKProxyFactory} instead.
+ */
+public class GeneratedProxyFactory extends ProxyFactory {
+
+	/**
+	 * Method <code>Lookup#defineHiddenClass()</code> if available.
+	 */
+	private static final Method defineHiddenClass;
+
+	/**
+	 * Empty array of <code>Lookup.ClassOption</code>s.
+	 */
+	private static final Object noOptions;
+
+	static {
+		Method method = null;
+		Object options = null;
+		try {
+			Class option = Class
+					.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+			options = Array.newInstance(option, 0);
+			method = MethodHandles.Lookup.class.getMethod("defineHiddenClass",
+					new Class[] { byte[].class, Boolean.TYPE,
+							options.getClass() });
+		} catch (Exception notAvailable) {
+		}
+		defineHiddenClass = method;
+		noOptions = options;
+	}
+
+	/**
+	 * Number of generated proxy classes, for unique class names.
+	 */
+	private static final AtomicInteger classNumber = new AtomicInteger();
+
+	/**
+	 * Marker for classes that are not supported.
+	 */
+	private static final ProxyType UNSUPPORTED = new ProxyType(new Method[0],
+			new Class[0][]);
+
+	/**
+	 * Proxy types of wrapped classes.
+	 */
+	private static final ClassValue<ProxyType> types = new ClassValue<ProxyType>() {
+		protected ProxyType computeValue(Class<?> clazz) {
+			return createType(clazz);
+		}
+	};
+
+	private ProxyFactory fallback = new JDKProxyFactory();
+
+	/**
+	 * Local methods are added to the fallback factory too.
+	 */
+	public synchronized void addLocalMethod(Method method) {
+		super.addLocalMethod(method);
+
+		fallback.addLocalMethod(method);
+	}
+
+	/**
+	 * Local methods are removed from the fallback factory too.
+	 */
+	public synchronized void removeLocalMethod(Method method) {
+		super.removeLocalMethod(method);
+
+		fallback.removeLocalMethod(method);
+	}
+
+	/**
+	 * Create a proxy of the generated class for the class of the given
+	 * object, or a proxy of the {@link JDKProxyFactory} if the class is not
+	 * supported.
+	 */
+	public Object createProxy(Object object, Evaluator evaluator) {
+		ProxyType type = types.get(object.getClass());
+		if (type == UNSUPPORTED) {
+			return fallback.createProxy(object, evaluator);
+		}
+
+		Handler handler = new Handler(this, type, object, evaluator);
+		try {
+			handler.proxy = (Object) type.constructor.invokeExact(handler);
+		} catch (Throwable ex) {
+			throw new Error(ex);
+		}
+		return handler.proxy;
+	}
+
+	/**
+	 * Generated proxies are recognized by their marker interface, others are
+	 * tested by the {@link JDKProxyFactory}.
+	 */
+	public boolean isProxy(Object object) {
+		if (object instanceof Generated) {
+			return true;
+		}
+		return fallback.isProxy(object);
+	}
+
+	protected boolean areProxyEqual(Object proxy1, Object proxy2) {
+		if (proxy1 instanceof Generated && proxy2 instanceof Generated) {
+			Handler handler1 = ((Generated) proxy1).spinHandler();
+			Handler handler2 = ((Generated) proxy2).spinHandler();
+
+			return handler1.object.equals(handler2.object);
+		} else if (!(proxy1 instanceof Generated)
+				&& !(proxy2 instanceof Generated)) {
+			return ((JDKProxyFactory) fallback).areProxyEqual(proxy1, proxy2);
+		}
+		return false;
+	}
+
+	/**
+	 * Create the proxy type for the given class.
+	 * 
+	 * @param clazz
+	 *            class to create proxy type for
+	 * @return proxy type or {@link #UNSUPPORTED}
+	 */
+	private static ProxyType createType(Class clazz) {
+		Class[] interfaces = getPublicInterfaces(clazz);
+
+		Map<String, Method> methods = new LinkedHashMap<String, Method>();
+		Map<String, Class> receivers = new LinkedHashMap<String, Class>();
+		for (int i = 0; i < interfaces.length; i++) {
+			Method[] candidates = interfaces[i].getMethods();
+			for (int c = 0; c < candidates.length; c++) {
+				Method candidate = candidates[c];
+				if (Modifier.isStatic(candidate.getModifiers())) {
+					continue;
+				}
+
+				String key = candidate.getName()
+						+ ProxyGenerator.descriptor(candidate).substring(0,
+								ProxyGenerator.descriptor(candidate).indexOf(')'));
+				Method existing = methods.get(key);
+				if (existing == null) {
+					methods.put(key, candidate);
+					receivers.put(key, interfaces[i]);
+				} else if (existing.getReturnType() != candidate
+						.getReturnType()) {
+					return UNSUPPORTED;
+				}
+			}
+		}
+		Method[] objectMethods = Object.class.getMethods();
+		for (int o = 0; o < objectMethods.length; o++) {
+			Method method = objectMethods[o];
+			String name = method.getName();
+			if ("equals".equals(name) || "hashCode".equals(name)
+					|| "toString".equals(name)) {
+				String key = name
+						+ ProxyGenerator.descriptor(method).substring(0,
+								ProxyGenerator.descriptor(method).indexOf(')'));
+				methods.put(key, method);
+				receivers.put(key, Object.class);
+			}
+		}
+
+		List<Method> methodList = new ArrayList<Method>(methods.values());
+		for (int m = 0; m < methodList.size(); m++) {
+			if (!isSupported(methodList.get(m))) {
+				return UNSUPPORTED;
+			}
+		}
+
+		Method[] methodArray = methodList.toArray(new Method[methodList.size()]);
+		Class[][] exceptions = new Class[methodArray.length][];
+		for (int m = 0; m < methodArray.length; m++) {
+			exceptions[m] = methodArray[m].getExceptionTypes();
+		}
+		ProxyType type = new ProxyType(methodArray, exceptions);
+
+		String name = "spin/proxy/GeneratedProxy$"
+				+ classNumber.incrementAndGet();
+		byte[] bytes = new ProxyGenerator(name, interfaces, methodArray,
+				receivers.values().toArray(new Class[methodArray.length]))
+				.generate();
+
+		try {
+			MethodHandles.Lookup lookup;
+			Class proxyClass;
+			if (defineHiddenClass != null
+					&& isVisible(interfaces, GeneratedProxyFactory.class
+							.getClassLoader())) {
+				lookup = (MethodHandles.Lookup) defineHiddenClass.invoke(
+						MethodHandles.lookup(), new Object[] { bytes,
+								Boolean.TRUE, noOptions });
+				proxyClass = lookup.lookupClass();
+			} else {
+				lookup = MethodHandles.publicLookup();
+				proxyClass = new ProxyClassLoader(clazz.getClassLoader())
+						.define(name.replace('/', '.'), bytes);
+			}
+
+			type.evaluate = lookup.findStatic(proxyClass,
+					ProxyGenerator.EVALUATE, MethodType.methodType(Void.TYPE,
+							Integer.TYPE, Object.class,
+							GeneratedInvocation.class));
+			type.constructor = lookup.findConstructor(proxyClass,
+					MethodType.methodType(Void.TYPE, Handler.class)).asType(
+					MethodType.methodType(Object.class, Handler.class));
+		} catch (Exception ex) {
+			return UNSUPPORTED;
+		} catch (LinkageError error) {
+			return UNSUPPORTED;
+		}
+
+		return type;
+	}
+
+	/**
+	 * Test if the given method can be implemented by a generated proxy.
+	 * 
+	 * @param method
+	 *            method to test
+	 * @return <code>true</code> if supported
+	 */
+	private static boolean isSupported(Method method) {
+		int slots = 0;
+
+		Class[] parameters = method.getParameterTypes();
+		for (int p = 0; p < parameters.length; p++) {
+			if (!isPublic(parameters[p])) {
+				return false;
+			}
+			slots += ProxyGenerator.size(parameters[p]);
+		}
+
+		return isPublic(method.getReturnType()) && slots < 250;
+	}
+
+	private static boolean isPublic(Class type) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+	}
+
+	private static boolean isVisible(Class[] interfaces, ClassLoader loader) {
+		for (int i = 0; i < interfaces.length; i++) {
+			try {
+				if (Class.forName(interfaces[i].getName(), false, loader) != interfaces[i]) {
+					return false;
+				}
+			} catch (ClassNotFoundException ex) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Utility method to retrieve all public interfaces of a class and its
+	 * superclasses.
+	 * 
+	 * @param clazz
+	 *            class to get interfaces for
+	 * @return implemented interfaces
+	 */
+	private static Class[] getPublicInterfaces(Class clazz) {
+		Set<Class> interfaces = new LinkedHashSet<Class>();
+		while (clazz != null) {
+			Class[] candidates = clazz.getInterfaces();
+			for (int c = 0; c < candidates.length; c++) {
+				if (Modifier.isPublic(candidates[c].getModifiers())) {
+					interfaces.add(candidates[c]);
+				}
+			}
+
+			clazz = clazz.getSuperclass();
+		}
+
+		return interfaces.toArray(new Class[interfaces.size()]);
+	}
+
+	/**
+	 * Interface implemented by all generated proxies. <br>
+	 * This interface is public for access from generated proxies only and is
+	 * not intended for use by applications.
+	 */
+	public static interface Generated {
+
+		/**
+		 * Get the handler of the proxy.
+		 * 
+		 * @return handler
+		 */
+		public Handler spinHandler();
+	}
+
+	/**
+	 * A generated proxy class.
+	 */
+	static final class ProxyType {
+
+		final Method[] methods;
+
+		final Class[][] exceptions;
+
+		/**
+		 * Maximum number of parameters of all methods.
+		 */
+		final int maxParameters;
+
+		/**
+		 * Handle on the constructor of the proxy class.
+		 */
+		MethodHandle constructor;
+
+		/**
+		 * Handle on the static evaluation method of the proxy class.
+		 */
+		MethodHandle evaluate;
+
+		/**
+		 * The invocation reused by each thread.
+		 */
+		final ThreadLocal<GeneratedInvocation> invocations = new ThreadLocal<GeneratedInvocation>();
+
+		ProxyType(Method[] methods, Class[][] exceptions) {
+			this.methods = methods;
+			this.exceptions = exceptions;
+
+			int max = 0;
+			for (int m = 0; m < methods.length; m++) {
+				max = Math.max(max, methods[m].getParameterTypes().length);
+			}
+			maxParameters = max;
+		}
+
+		/**
+		 * Check the given throwable against the exceptions declared by the
+		 * method with the given index.
+		 * 
+		 * @param index
+		 *            index of method
+		 * @param throwable
+		 *            throwable to check
+		 * @return throwable to throw
+		 */
+		Throwable check(int index, Throwable throwable) {
+			if (throwable instanceof RuntimeException
+					|| throwable instanceof Error) {
+				return throwable;
+			}
+
+			Class[] declared = exceptions[index];
+			for (int d = 0; d < declared.length; d++) {
+				if (declared[d].isInstance(throwable)) {
+					return throwable;
+				}
+			}
+			return new UndeclaredThrowableException(throwable);
+		}
+	}
+
+	/**
+	 * Handler of invocations on a generated proxy. <br>
+	 * This class is public for access from generated proxies only and is not
+	 * intended for use by applications.
+	 */
+	public static final class Handler {
+
+		private GeneratedProxyFactory factory;
+
+		private ProxyType type;
+
+		private Object object;
+
+		private Evaluator evaluator;
+
+		private Object proxy;
+
+		/**
+		 * Create a new handler of invocations.
+		 * 
+		 * @param factory
+		 *            the factory of the proxy
+		 * @param type
+		 *            the type of the proxy
+		 * @param object
+		 *            the object to invoke methods on
+		 * @param evaluator
+		 *            the evaluator of methods
+		 */
+		Handler(GeneratedProxyFactory factory, ProxyType type, Object object,
+				Evaluator evaluator) {
+			this.factory = factory;
+			this.type = type;
+			this.object = object;
+			this.evaluator = evaluator;
+		}
+
+		/**
+		 * Acquire an invocation of the method with the given index - the
+		 * invocation of the current thread is reused if not in use.
+		 * 
+		 * @param index
+		 *            index of method
+		 * @return invocation
+		 */
+		public GeneratedInvocation acquire(int index) {
+			GeneratedInvocation invocation = type.invocations.get();
+			if (invocation == null || invocation.inUse) {
+				invocation = new GeneratedInvocation(type);
+				type.invocations.set(invocation);
+			}
+			invocation.inUse = true;
+			invocation.reset(object, index);
+
+			return invocation;
+		}
+
+		/**
+		 * Release the given invocation - it is reused as soon as it cannot be
+		 * referenced by an evaluator any longer, i.e. once it is evaluated.
+		 * Methods of <code>Object</code> are never passed to an evaluator.
+		 * 
+		 * @param invocation
+		 *            invocation to release
+		 */
+		private void release(GeneratedInvocation invocation) {
+			if (invocation.getMethod().getDeclaringClass() == Object.class) {
+				invocation.clear();
+				invocation.inUse = false;
+			} else {
+				invocation.release();
+			}
+		}
+
+		private void dispatch(GeneratedInvocation invocation) throws Throwable {
+			try {
+				if (invocation.getMethod().getDeclaringClass() == Object.class) {
+					invocation.setResult(factory.evaluteInvocation(evaluator,
+							proxy, invocation));
+				} else {
+					factory.evaluate(evaluator, invocation);
+
+					if (invocation.getThrowable() != null) {
+						throw invocation.getThrowable();
+					}
+				}
+			} catch (Throwable throwable) {
+				throw type.check(invocation.index, throwable);
+			}
+		}
+
+		/**
+		 * Dispatch an invocation of a method without result.
+		 * 
+		 * @param invocation
+		 *            invocation to dispatch
+		 * @throws Throwable
+		 *             if the wrapped method throws a <code>Throwable</code>
+		 */
+		public void dispatchVoid(GeneratedInvocation invocation)
+				throws Throwable {
+			try {
+				dispatch(invocation);
+			} finally {
+				release(invocation);
+			}
+		}
+
+		/**
+		 * Dispatch an invocation of a method with an <code>int</code>,
+		 * <code>boolean</code>, <code>byte</code>, <code>char</code> or
+		 * <code>short</code> result.
+		 * 
+		 * @param invocation
+		 *            invocation to dispatch
+		 * @return result
+		 * @throws Throwable
+		 *             if the wrapped method throws a <code>Throwable</code>
+		 */
+		public int dispatchInt(GeneratedInvocation invocation) throws Throwable {
+			try {
+				dispatch(invocation);
+
+				return invocation.resultInt();
+			} finally {
+				release(invocation);
+			}
+		}
+
+		/**
+		 * Dispatch an invocation of a method with a <code>long</code> result.
+		 * 
+		 * @param invocation
+		 *            invocation to dispatch
+		 * @return result
+		 * @throws Throwable
+		 *             if the wrapped method throws a <code>Throwable</code>
+		 */
+		public long dispatchLong(GeneratedInvocation invocation)
+				throws Throwable {
+			try {
+				dispatch(invocation);
+
+				return invocation.resultLong();
+			} finally {
+				release(invocation);
+			}
+		}
+
+		/**
+		 * Dispatch an invocation of a method with a <code>float</code>
+		 * result.
+		 * 
+		 * @param invocation
+		 *            invocation to dispatch
+		 * @return result
+		 * @throws Throwable
+		 *             if the wrapped method throws a <code>Throwable</code>
+		 */
+		public float dispatchFloat(GeneratedInvocation invocation)
+				throws Throwable {
+			try {
+				dispatch(invocation);
+
+				return invocation.resultFloat();
+			} finally {
+				release(invocation);
+			}
+		}
+
+		/**
+		 * Dispatch an invocation of a method with a <code>double</code>
+		 * result.
+		 * 
+		 * @param invocation
+		 *            invocation to dispatch
+		 * @return result
+		 * @throws Throwable
+		 *             if the wrapped method throws a <code>Throwable</code>
+		 */
+		public double dispatchDouble(GeneratedInvocation invocation)
+				throws Throwable {
+			try {
+				dispatch(invocation);
+
+				return invocation.resultDouble();
+			} finally {
+				release(invocation);
+			}
+		}
+
+		/**
+		 * Dispatch an invocation of a method with a reference result.
+		 * 
+		 * @param invocation
+		 *            invocation to dispatch
+		 * @return result
+		 * @throws Throwable
+		 *             if the wrapped method throws a <code>Throwable</code>
+		 */
+		public Object dispatchObject(GeneratedInvocation invocation)
+				throws Throwable {
+			try {
+				dispatch(invocation);
+
+				return invocation.resultObject();
+			} finally {
+				release(invocation);
+			}
+		}
+	}
+
+	/**
+	 * Class loader of proxy classes, resolving the support classes of this
+	 * factory from the class loader of <em>Spin</em>.
+	 */
+	private static class ProxyClassLoader extends ClassLoader {
+
+		public ProxyClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		protected Class loadClass(String name, boolean resolve)
+				throws ClassNotFoundException {
+			if (name.startsWith(GeneratedProxyFactory.class.getName())
+					|| name.equals(GeneratedInvocation.class.getName())) {
+				return Class.forName(name, resolve, GeneratedProxyFactory.class
+						.getClassLoader());
+			}
+			return super.loadClass(name, resolve);
+		}
+
+		public Class define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -18,6 +18,9 @@
  */
 package spin.proxy;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -34,17 +37,23 @@ import spin.ProxyFactory;
  */
 public class JDKProxyFactory extends ProxyFactory {
 
+	/**
+	 * Proxy classes of wrapped classes.
+	 */
+	private static final ClassValue<ProxyClass> proxyClasses = new ClassValue<ProxyClass>() {
+		protected ProxyClass computeValue(Class<?> clazz) {
+			return new ProxyClass(clazz);
+		}
+	};
+
 	/**
 	 * The created proxy will not implement non-public interfaces from different
 	 * class loaders since these yield an {@link IllegalAccessError} on
 	 * construction of a proxy.
 	 */
 	public Object createProxy(Object object, Evaluator evaluator) {
-		Class clazz = object.getClass();
-
-		return Proxy.newProxyInstance(clazz.getClassLoader(),
-				getAccessibleInterfaces(clazz), new SpinInvocationHandler(
-						object, evaluator));
+		return proxyClasses.get(object.getClass()).newInstance(
+				new SpinInvocationHandler(object, evaluator));
 	}
 
 	/**
@@ -80,6 +89,55 @@ public class JDKProxyFactory extends ProxyFactory {
 		return (Class[]) interfaces.toArray(new Class[interfaces.size()]);
 	}
 
+	/**
+	 * The proxy class of a wrapped class, resolved once per class.
+	 */
+	private static class ProxyClass {
+
+		private ClassLoader loader;
+
+		private Class[] interfaces;
+
+		/**
+		 * Handle of the constructor, <code>null</code> if not accessible.
+		 */
+		private MethodHandle constructor;
+
+		public ProxyClass(Class clazz) {
+			loader = clazz.getClassLoader();
+			interfaces = getAccessibleInterfaces(clazz);
+
+			try {
+				constructor = MethodHandles.publicLookup().unreflectConstructor(
+						Proxy.getProxyClass(loader, interfaces).getConstructor(
+								new Class[] { InvocationHandler.class }))
+						.asType(MethodType.methodType(Object.class,
+								InvocationHandler.class));
+			} catch (Exception ex) {
+				// leave it to Proxy to report on creation of a proxy
+			}
+		}
+
+		/**
+		 * Create a new proxy instance.
+		 * 
+		 * @param handler
+		 *            handler of invocations
+		 * @return new proxy
+		 */
+		public Object newInstance(InvocationHandler handler) {
+			if (constructor != null) {
+				try {
+					return (Object) constructor.invokeExact(handler);
+				} catch (Throwable ex) {
+					throw new Error(ex);
+				}
+			}
+
+			return Proxy.newProxyInstance(loader, interfaces, handler);
+		}
+	}
+
 	public boolean isProxy(Object object) {
 
 		if (object == null) {
@@ -0,0 +1,547 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generator of the bytecode of proxy classes for the
+ * {@link GeneratedProxyFactory}. <br>
+ * A generated class implements the given interfaces, each method hands its
+ * arguments unboxed to a {@link GeneratedInvocation} and returns the unboxed
+ * result of its evaluation. A static method <code>spinEvaluate</code>
+ * evaluates an invocation by calling the actual method on the wrapped object.
+ * <br>
+ * Classes are generated in version 49 format, which does not require stack
+ * map frames.
+ */
+class ProxyGenerator {
+
+	private static final int VERSION = 49;
+
+	private static final String OBJECT = "java/lang/Object";
+
+	private static final String HANDLER = "spin/proxy/GeneratedProxyFactory$Handler";
+
+	private static final String GENERATED = "spin/proxy/GeneratedProxyFactory$Generated";
+
+	private static final String INVOCATION = "spin/proxy/GeneratedInvocation";
+
+	private static final String INVOCATION_DESC = "L" + INVOCATION + ";";
+
+	/**
+	 * Name of the static evaluation method.
+	 */
+	static final String EVALUATE = "spinEvaluate";
+
+	/**
+	 * Descriptor of the static evaluation method.
+	 */
+	static final String EVALUATE_DESC = "(ILjava/lang/Object;"
+			+ INVOCATION_DESC + ")V";
+
+	private String className;
+
+	private Class<?>[] interfaces;
+
+	private Method[] methods;
+
+	private Class<?>[] receivers;
+
+	private List<byte[]> pool = new ArrayList<byte[]>();
+
+	private Map<String, Integer> indices = new HashMap<String, Integer>();
+
+	/**
+	 * Create a generator.
+	 * 
+	 * @param className
+	 *            internal name of class to generate
+	 * @param interfaces
+	 *            interfaces to implement
+	 * @param methods
+	 *            methods to implement
+	 * @param receivers
+	 *            for each method the type to invoke it on
+	 */
+	public ProxyGenerator(String className, Class<?>[] interfaces,
+			Method[] methods, Class<?>[] receivers) {
+		this.className = className;
+		this.interfaces = interfaces;
+		this.methods = methods;
+		this.receivers = receivers;
+	}
+
+	/**
+	 * Generate the bytecode.
+	 * 
+	 * @return bytecode of class
+	 */
+	public byte[] generate() {
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(body);
+
+			out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+			out.writeShort(classIndex(className));
+			out.writeShort(classIndex(OBJECT));
+
+			out.writeShort(interfaces.length + 1);
+			for (int i = 0; i < interfaces.length; i++) {
+				out.writeShort(classIndex(internalName(interfaces[i])));
+			}
+			out.writeShort(classIndex(GENERATED));
+
+			out.writeShort(1);
+			out.writeShort(0x0002 | 0x0010); // private final
+			out.writeShort(utf8Index("handler"));
+			out.writeShort(utf8Index("L" + HANDLER + ";"));
+			out.writeShort(0);
+
+			out.writeShort(methods.length + 3);
+			writeConstructor(out);
+			writeGetHandler(out);
+			for (int m = 0; m < methods.length; m++) {
+				writeMethod(out, m);
+			}
+			writeEvaluate(out);
+
+			out.writeShort(0);
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream header = new DataOutputStream(bytes);
+			header.writeInt(0xCAFEBABE);
+			header.writeShort(0);
+			header.writeShort(VERSION);
+			header.writeShort(pool.size() + 1);
+			for (int p = 0; p < pool.size(); p++) {
+				header.write(pool.get(p));
+			}
+			header.write(body.toByteArray());
+
+			return bytes.toByteArray();
+		} catch (IOException ex) {
+			throw new Error(ex);
+		}
+	}
+
+	private void writeConstructor(DataOutputStream out) throws IOException {
+		Code code = new Code();
+		code.op(0x2A); // aload_0
+		code.op(0xB7, methodIndex(OBJECT, "<init>", "()V", false));
+		code.op(0x2A); // aload_0
+		code.op(0x2B); // aload_1
+		code.op(0xB5, fieldIndex());
+		code.op(0xB1); // return
+
+		writeMethod(out, 0x0001, "<init>", "(L" + HANDLER + ";)V", code, 2, 2);
+	}
+
+	private void writeGetHandler(DataOutputStream out) throws IOException {
+		Code code = new Code();
+		code.op(0x2A); // aload_0
+		code.op(0xB4, fieldIndex());
+		code.op(0xB0); // areturn
+
+		writeMethod(out, 0x0001, "spinHandler", "()L" + HANDLER + ";", code,
+				1, 1);
+	}
+
+	/**
+	 * Write a method handing its arguments to an invocation.
+	 */
+	private void writeMethod(DataOutputStream out, int m) throws IOException {
+		Method method = methods[m];
+		Class<?>[] parameters = method.getParameterTypes();
+		Class<?> returnType = method.getReturnType();
+
+		int local = 1;
+		for (int p = 0; p < parameters.length; p++) {
+			local += size(parameters[p]);
+		}
+
+		Code code = new Code();
+		code.op(0x2A); // aload_0
+		code.op(0xB4, fieldIndex());
+		code.push(m);
+		code.op(0xB6, methodIndex(HANDLER, "acquire", "(I)" + INVOCATION_DESC,
+				false));
+		code.op(0x3A, local, 1); // astore
+
+		int slot = 1;
+		for (int p = 0; p < parameters.length; p++) {
+			Class<?> type = parameters[p];
+			code.op(0x19, local, 1); // aload
+			code.push(p);
+			code.op(loadOpcode(type), slot, 1);
+			code.op(0xB6, methodIndex(INVOCATION, "set" + kind(type), "(I"
+					+ kindDescriptor(type) + ")V", false));
+			slot += size(type);
+		}
+
+		code.op(0x2A); // aload_0
+		code.op(0xB4, fieldIndex());
+		code.op(0x19, local, 1); // aload
+		code.op(0xB6, methodIndex(HANDLER, "dispatch" + resultKind(returnType),
+				"(" + INVOCATION_DESC + ")" + kindDescriptor(returnType), false));
+		if (!returnType.isPrimitive() && returnType != Object.class) {
+			code.op(0xC0, classIndex(internalName(returnType)));
+		}
+		code.op(returnOpcode(returnType));
+
+		writeMethod(out, 0x0001, method.getName(), descriptor(method), code,
+				4, local + 1);
+	}
+
+	/**
+	 * Write the static method evaluating an invocation on the wrapped object.
+	 */
+	private void writeEvaluate(DataOutputStream out) throws IOException {
+		Code code = new Code();
+
+		int maxStack = 0;
+
+		code.op(0x1A); // iload_0
+		int switchAt = code.length();
+		code.op(0xAA); // tableswitch
+		while (code.length() % 4 != 0) {
+			code.op(0);
+		}
+		int defaultAt = code.length();
+		code.s4(0);
+		code.s4(0);
+		code.s4(methods.length - 1);
+		int offsetsAt = code.length();
+		for (int m = 0; m < methods.length; m++) {
+			code.s4(0);
+		}
+
+		for (int m = 0; m < methods.length; m++) {
+			code.patch(offsetsAt + m * 4, code.length() - switchAt);
+
+			Method method = methods[m];
+			Class<?> receiver = receivers[m];
+			Class<?>[] parameters = method.getParameterTypes();
+			Class<?> returnType = method.getReturnType();
+
+			code.op(0x2C); // aload_2
+			code.op(0x2B); // aload_1
+			if (receiver != Object.class) {
+				code.op(0xC0, classIndex(internalName(receiver)));
+			}
+
+			int slots = 0;
+			for (int p = 0; p < parameters.length; p++) {
+				Class<?> type = parameters[p];
+				code.op(0x2C); // aload_2
+				code.push(p);
+				code.op(0xB6, methodIndex(INVOCATION, "get" + kind(type), "(I)"
+						+ kindDescriptor(type), false));
+				if (!type.isPrimitive() && type != Object.class) {
+					code.op(0xC0, classIndex(internalName(type)));
+				}
+				slots += size(type);
+			}
+			maxStack = Math.max(maxStack, 2 + slots + 2);
+
+			if (receiver.isInterface()) {
+				code.op(0xB9, methodIndex(internalName(receiver), method
+						.getName(), descriptor(method), true));
+				code.u1(1 + slots);
+				code.u1(0);
+			} else {
+				code.op(0xB6, methodIndex(internalName(receiver), method
+						.getName(), descriptor(method), false));
+			}
+
+			if (returnType == Void.TYPE) {
+				code.op(0x57); // pop
+			} else {
+				code.op(0xB6, methodIndex(INVOCATION, "setResult"
+						+ resultKind(returnType), "("
+						+ kindDescriptor(returnType) + ")V", false));
+			}
+			code.op(0xB1); // return
+		}
+
+		code.patch(defaultAt, code.length() - switchAt);
+		code.op(0xB1); // return
+
+		writeMethod(out, 0x0001 | 0x0008, EVALUATE, EVALUATE_DESC, code,
+				maxStack, 3);
+	}
+
+	private void writeMethod(DataOutputStream out, int access, String name,
+			String descriptor, Code code, int maxStack, int maxLocals)
+			throws IOException {
+		out.writeShort(access);
+		out.writeShort(utf8Index(name));
+		out.writeShort(utf8Index(descriptor));
+		out.writeShort(1);
+
+		byte[] bytes = code.toByteArray();
+		out.writeShort(utf8Index("Code"));
+		out.writeInt(2 + 2 + 4 + bytes.length + 2 + 2);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		out.writeShort(0);
+		out.writeShort(0);
+	}
+
+	private int fieldIndex() {
+		return refIndex(9, className, "handler", "L" + HANDLER + ";");
+	}
+
+	private int methodIndex(String owner, String name, String descriptor,
+			boolean isInterface) {
+		return refIndex(isInterface ? 11 : 10, owner, name, descriptor);
+	}
+
+	private int refIndex(int tag, String owner, String name, String descriptor) {
+		String key = tag + owner + "." + name + descriptor;
+		Integer index = indices.get(key);
+		if (index == null) {
+			int nameAndType = constant("NT" + name + descriptor, 12, utf8Index(name),
+					utf8Index(descriptor));
+			index = Integer.valueOf(constant(key, tag, classIndex(owner),
+					nameAndType));
+		}
+		return index.intValue();
+	}
+
+	private int classIndex(String name) {
+		return constant("C" + name, 7, utf8Index(name), -1);
+	}
+
+	private int utf8Index(String value) {
+		String key = "U" + value;
+		Integer index = indices.get(key);
+		if (index == null) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeByte(1);
+				out.writeUTF(value);
+				pool.add(bytes.toByteArray());
+			} catch (IOException ex) {
+				throw new Error(ex);
+			}
+			index = Integer.valueOf(pool.size());
+			indices.put(key, index);
+		}
+		return index.intValue();
+	}
+
+	private int constant(String key, int tag, int first, int second) {
+		Integer index = indices.get(key);
+		if (index == null) {
+			byte[] bytes;
+			if (second == -1) {
+				bytes = new byte[] { (byte) tag, (byte) (first >> 8),
+						(byte) first };
+			} else {
+				bytes = new byte[] { (byte) tag, (byte) (first >> 8),
+						(byte) first, (byte) (second >> 8), (byte) second };
+			}
+			pool.add(bytes);
+			index = Integer.valueOf(pool.size());
+			indices.put(key, index);
+		}
+		return index.intValue();
+	}
+
+	/**
+	 * Get the kind of value stored in an invocation for the given type.
+	 */
+	private static String kind(Class<?> type) {
+		if (type == Long.TYPE) {
+			return "Long";
+		} else if (type == Float.TYPE) {
+			return "Float";
+		} else if (type == Double.TYPE) {
+			return "Double";
+		} else if (type.isPrimitive()) {
+			return "Int";
+		} else {
+			return "Object";
+		}
+	}
+
+	private static String resultKind(Class<?> type) {
+		if (type == Void.TYPE) {
+			return "Void";
+		}
+		return kind(type);
+	}
+
+	private static String kindDescriptor(Class<?> type) {
+		if (type == Void.TYPE) {
+			return "V";
+		}
+		String kind = kind(type);
+		if ("Object".equals(kind)) {
+			return "Ljava/lang/Object;";
+		} else if ("Int".equals(kind)) {
+			return "I";
+		} else {
+			return descriptor(type);
+		}
+	}
+
+	private static int loadOpcode(Class<?> type) {
+		if (type == Long.TYPE) {
+			return 0x16;
+		} else if (type == Float.TYPE) {
+			return 0x17;
+		} else if (type == Double.TYPE) {
+			return 0x18;
+		} else if (type.isPrimitive()) {
+			return 0x15;
+		} else {
+			return 0x19;
+		}
+	}
+
+	private static int returnOpcode(Class<?> type) {
+		if (type == Void.TYPE) {
+			return 0xB1;
+		} else if (type == Long.TYPE) {
+			return 0xAD;
+		} else if (type == Float.TYPE) {
+			return 0xAE;
+		} else if (type == Double.TYPE) {
+			return 0xAF;
+		} else if (type.isPrimitive()) {
+			return 0xAC;
+		} else {
+			return 0xB0;
+		}
+	}
+
+	/**
+	 * Get the number of local variable slots of the given type.
+	 */
+	static int size(Class<?> type) {
+		return (type == Long.TYPE || type == Double.TYPE) ? 2 : 1;
+	}
+
+	static String internalName(Class<?> type) {
+		return type.getName().replace('.', '/');
+	}
+
+	static String descriptor(Method method) {
+		StringBuffer buffer = new StringBuffer("(");
+		Class<?>[] parameters = method.getParameterTypes();
+		for (int p = 0; p < parameters.length; p++) {
+			buffer.append(descriptor(parameters[p]));
+		}
+		buffer.append(')');
+		buffer.append(descriptor(method.getReturnType()));
+		return buffer.toString();
+	}
+
+	static String descriptor(Class<?> type) {
+		if (type == Void.TYPE) {
+			return "V";
+		} else if (type == Integer.TYPE) {
+			return "I";
+		} else if (type == Long.TYPE) {
+			return "J";
+		} else if (type == Float.TYPE) {
+			return "F";
+		} else if (type == Double.TYPE) {
+			return "D";
+		} else if (type == Boolean.TYPE) {
+			return "Z";
+		} else if (type == Byte.TYPE) {
+			return "B";
+		} else if (type == Character.TYPE) {
+			return "C";
+		} else if (type == Short.TYPE) {
+			return "S";
+		} else if (type.isArray()) {
+			return internalName(type);
+		} else {
+			return "L" + internalName(type) + ";";
+		}
+	}
+
+	/**
+	 * Bytecode of a method.
+	 */
+	private static class Code extends ByteArrayOutputStream {
+
+		public void u1(int value) {
+			write(value);
+		}
+
+		public void s4(int value) {
+			write(value >> 24);
+			write(value >> 16);
+			write(value >> 8);
+			write(value);
+		}
+
+		public void patch(int at, int value) {
+			buf[at] = (byte) (value >> 24);
+			buf[at + 1] = (byte) (value >> 16);
+			buf[at + 2] = (byte) (value >> 8);
+			buf[at + 3] = (byte) value;
+		}
+
+		public int length() {
+			return count;
+		}
+
+		public void op(int opcode) {
+			write(opcode);
+		}
+
+		public void op(int opcode, int operand) {
+			op(opcode, operand, 2);
+		}
+
+		public void op(int opcode, int operand, int size) {
+			write(opcode);
+			if (size == 2) {
+				write(operand >> 8);
+			}
+			write(operand);
+		}
+
+		public void push(int value) {
+			if (value <= 5) {
+				op(0x03 + value); // iconst_n
+			} else if (value <= Byte.MAX_VALUE) {
+				op(0x10, value, 1); // bipush
+			} else {
+				op(0x11, value, 2); // sipush
+			}
+		}
+	}
+}
@@ -0,0 +1,321 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Annotation processor generating static proxy classes for interfaces
+ * annotated with {@link SpinProxy}. <br>
+ * Each generated class extends {@link StaticProxy} and passes all invocations
+ * through the {@link spin.Evaluator} of the proxy, thus no proxy class has to
+ * be generated at runtime.
+ * 
+ * @see StaticProxyFactory
+ */
+public class SpinProxyProcessor extends AbstractProcessor {
+
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(SpinProxy.class.getName());
+	}
+
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	public boolean process(Set<? extends TypeElement> annotations,
+			RoundEnvironment round) {
+		Iterator<? extends Element> elements = round.getElementsAnnotatedWith(
+				SpinProxy.class).iterator();
+		while (elements.hasNext()) {
+			Element element = elements.next();
+
+			if (element.getKind() != ElementKind.INTERFACE) {
+				error(element, "@SpinProxy is applicable to interfaces only");
+				continue;
+			}
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				error(element, "@SpinProxy is not applicable to private interfaces");
+				continue;
+			}
+
+			try {
+				generate((TypeElement) element);
+			} catch (IOException ex) {
+				error(element, "cannot generate proxy " + ex.getMessage());
+			}
+		}
+		return true;
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+				message, element);
+	}
+
+	/**
+	 * Generate the proxy for the given interface.
+	 * 
+	 * @param type
+	 *            interface to generate proxy for
+	 * @throws IOException
+	 */
+	private void generate(TypeElement type) throws IOException {
+		Types types = processingEnv.getTypeUtils();
+
+		PackageElement packageElement = processingEnv.getElementUtils()
+				.getPackageOf(type);
+		String binaryName = processingEnv.getElementUtils()
+				.getBinaryName(type).toString();
+		String className = binaryName.substring(binaryName.lastIndexOf('.') + 1)
+				+ StaticProxyFactory.SUFFIX;
+
+		PrintWriter writer = new PrintWriter(processingEnv.getFiler()
+				.createSourceFile(binaryName + StaticProxyFactory.SUFFIX, type)
+				.openWriter());
+
+		if (!packageElement.isUnnamed()) {
+			writer.println("package " + packageElement.getQualifiedName() + ";");
+			writer.println();
+		}
+		writer.println("/**");
+		writer.println(" * Proxy for {@link " + type.getQualifiedName()
+				+ "} generated by " + getClass().getName() + ".");
+		writer.println(" */");
+		writer.println("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+		writer.println("public final class " + className
+				+ typeParameters(type.getTypeParameters()).trim()
+				+ " extends spin.proxy.StaticProxy implements "
+				+ type.asType() + " {");
+
+		List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+		Iterator<ExecutableElement> members = ElementFilter.methodsIn(
+				processingEnv.getElementUtils().getAllMembers(type))
+				.iterator();
+		while (members.hasNext()) {
+			ExecutableElement method = members.next();
+			Set<Modifier> modifiers = method.getModifiers();
+			if (modifiers.contains(Modifier.STATIC)
+					|| modifiers.contains(Modifier.PRIVATE)
+					|| method.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+				continue;
+			}
+			methods.add(method);
+		}
+
+		for (int m = 0; m < methods.size(); m++) {
+			ExecutableElement method = methods.get(m);
+
+			writer.println();
+			writer.print("\tprivate static final java.lang.reflect.Method method"
+					+ m + " = method(" + types.erasure(type.asType())
+					+ ".class, \"" + method.getSimpleName()
+					+ "\", new Class[] {");
+			List<? extends VariableElement> parameters = method.getParameters();
+			for (int p = 0; p < parameters.size(); p++) {
+				writer.print((p == 0 ? " " : ", ")
+						+ types.erasure(parameters.get(p).asType()) + ".class");
+			}
+			writer.println(" });");
+		}
+
+		writer.println();
+		writer.println("\tpublic " + className
+				+ "(spin.proxy.StaticProxyFactory factory, Object object, spin.Evaluator evaluator) {");
+		writer.println("\t\tsuper(factory, object, evaluator);");
+		writer.println("\t}");
+
+		for (int m = 0; m < methods.size(); m++) {
+			generateMethod(writer, type, methods.get(m), m);
+		}
+
+		writer.println("}");
+		writer.close();
+	}
+
+	private void generateMethod(PrintWriter writer, TypeElement type,
+			ExecutableElement method, int m) {
+		Types types = processingEnv.getTypeUtils();
+
+		ExecutableType executable = (ExecutableType) types.asMemberOf(
+				(DeclaredType) type.asType(), method);
+		List<? extends TypeMirror> parameters = executable.getParameterTypes();
+		TypeMirror returnType = executable.getReturnType();
+
+		writer.println();
+		writer.print("\tpublic " + typeParameters(method.getTypeParameters())
+				+ returnType + " " + method.getSimpleName() + "(");
+		for (int p = 0; p < parameters.size(); p++) {
+			if (p > 0) {
+				writer.print(", ");
+			}
+			TypeMirror parameter = parameters.get(p);
+			if (method.isVarArgs() && p == parameters.size() - 1) {
+				writer.print(((ArrayType) parameter).getComponentType() + "...");
+			} else {
+				writer.print(parameter);
+			}
+			writer.print(" p" + p);
+		}
+		writer.print(")");
+		List<? extends TypeMirror> thrown = executable.getThrownTypes();
+		for (int t = 0; t < thrown.size(); t++) {
+			writer.print((t == 0 ? " throws " : ", ") + thrown.get(t));
+		}
+		writer.println(" {");
+
+		StringBuffer invoke = new StringBuffer("invoke(method" + m
+				+ ", new Object[] {");
+		for (int p = 0; p < parameters.size(); p++) {
+			invoke.append((p == 0 ? " p" : ", p") + p);
+		}
+		invoke.append(" })");
+
+		writer.println("\t\ttry {");
+		if (returnType.getKind() == TypeKind.VOID) {
+			writer.println("\t\t\t" + invoke + ";");
+		} else if (returnType.getKind().isPrimitive()) {
+			TypeMirror boxed = types.boxedClass(
+					types.getPrimitiveType(returnType.getKind())).asType();
+			writer.println("\t\t\treturn ((" + boxed + ") " + invoke + ")."
+					+ returnType + "Value();");
+		} else {
+			writer.println("\t\t\treturn (" + returnType + ") " + invoke + ";");
+		}
+		writer.println("\t\t} catch (RuntimeException ex) {");
+		writer.println("\t\t\tthrow ex;");
+		writer.println("\t\t} catch (Error ex) {");
+		writer.println("\t\t\tthrow ex;");
+
+		boolean throwable = false;
+		List<TypeMirror> catched = getCatched(thrown);
+		for (int c = 0; c < catched.size(); c++) {
+			TypeMirror catchedType = catched.get(c);
+			TypeMirror erasure = types.erasure(catchedType);
+			writer.println("\t\t} catch (" + erasure + " ex) {");
+			if (catchedType.getKind() == TypeKind.TYPEVAR) {
+				writer.println("\t\t\tthrow (" + catchedType + ") ex;");
+			} else {
+				writer.println("\t\t\tthrow ex;");
+			}
+			if (erasure.toString().equals(Throwable.class.getName())) {
+				throwable = true;
+			}
+		}
+		if (!throwable) {
+			writer.println("\t\t} catch (Throwable ex) {");
+			writer.println("\t\t\tthrow new java.lang.reflect.UndeclaredThrowableException(ex);");
+		}
+		writer.println("\t\t}");
+		writer.println("\t}");
+	}
+
+	/**
+	 * Get the thrown types to catch and rethrow, i.e. without unchecked
+	 * exceptions and without subtypes of other thrown types.
+	 */
+	private List<TypeMirror> getCatched(List<? extends TypeMirror> thrown) {
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror runtimeException = processingEnv.getElementUtils()
+				.getTypeElement(RuntimeException.class.getName()).asType();
+		TypeMirror error = processingEnv.getElementUtils().getTypeElement(
+				Error.class.getName()).asType();
+
+		List<TypeMirror> catched = new ArrayList<TypeMirror>();
+		for (int t = 0; t < thrown.size(); t++) {
+			TypeMirror candidate = types.erasure(thrown.get(t));
+			if (types.isSubtype(candidate, runtimeException)
+					|| types.isSubtype(candidate, error)) {
+				continue;
+			}
+
+			boolean covered = false;
+			for (int o = 0; o < thrown.size(); o++) {
+				TypeMirror other = types.erasure(thrown.get(o));
+				if (o != t
+						&& types.isSubtype(candidate, other)
+						&& (!types.isSameType(candidate, other) || o < t)) {
+					covered = true;
+				}
+			}
+			if (!covered) {
+				catched.add(thrown.get(t));
+			}
+		}
+		return catched;
+	}
+
+	private String typeParameters(List<? extends TypeParameterElement> parameters) {
+		if (parameters.isEmpty()) {
+			return "";
+		}
+
+		StringBuffer buffer = new StringBuffer("<");
+		for (int p = 0; p < parameters.size(); p++) {
+			TypeParameterElement parameter = parameters.get(p);
+			if (p > 0) {
+				buffer.append(", ");
+			}
+			buffer.append(parameter.getSimpleName());
+
+			List<? extends TypeMirror> bounds = parameter.getBounds();
+			for (int b = 0; b < bounds.size(); b++) {
+				if (b == 0) {
+					if (bounds.size() == 1
+							&& bounds.get(0).toString().equals(
+									Object.class.getName())) {
+						break;
+					}
+					buffer.append(" extends ");
+				} else {
+					buffer.append(" & ");
+				}
+				buffer.append(bounds.get(b));
+			}
+		}
+		buffer.append("> ");
+		return buffer.toString();
+	}
+}
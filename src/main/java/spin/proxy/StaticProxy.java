@@ -0,0 +1,137 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import spin.Evaluator;
+import spin.Invocation;
+
+/**
+ * Superclass of all proxies generated by the {@link SpinProxyProcessor}.
+ */
+public abstract class StaticProxy {
+
+	private static final Method equalsMethod = method(Object.class, "equals",
+			new Class[] { Object.class });
+
+	private static final Method hashCodeMethod = method(Object.class,
+			"hashCode", new Class[0]);
+
+	private static final Method toStringMethod = method(Object.class,
+			"toString", new Class[0]);
+
+	private StaticProxyFactory factory;
+
+	private Object object;
+
+	private Evaluator evaluator;
+
+	/**
+	 * Create a proxy.
+	 * 
+	 * @param factory
+	 *            the factory of this proxy
+	 * @param object
+	 *            the object to invoke methods on
+	 * @param evaluator
+	 *            the evaluator of methods
+	 */
+	protected StaticProxy(StaticProxyFactory factory, Object object,
+			Evaluator evaluator) {
+		this.factory = factory;
+		this.object = object;
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Get the object this proxy invokes methods on.
+	 * 
+	 * @return wrapped object
+	 */
+	Object getObject() {
+		return object;
+	}
+
+	/**
+	 * Handle the invocation of a method on this proxy.
+	 * 
+	 * @param method
+	 *            the method to invoke
+	 * @param args
+	 *            the arguments for the method
+	 * @return the result of the invocation on the wrapped object
+	 * @throws Throwable
+	 *             if the wrapped method throws a <code>Throwable</code>
+	 */
+	protected final Object invoke(Method method, Object[] args)
+			throws Throwable {
+		return factory.evaluate(evaluator, this, new Invocation(object, method,
+				args));
+	}
+
+	public boolean equals(Object other) {
+		return ((Boolean) invokeObjectMethod(equalsMethod,
+				new Object[] { other })).booleanValue();
+	}
+
+	public int hashCode() {
+		return ((Integer) invokeObjectMethod(hashCodeMethod, new Object[0]))
+				.intValue();
+	}
+
+	public String toString() {
+		return (String) invokeObjectMethod(toStringMethod, new Object[0]);
+	}
+
+	private Object invokeObjectMethod(Method method, Object[] args) {
+		try {
+			return invoke(method, args);
+		} catch (RuntimeException ex) {
+			throw ex;
+		} catch (Error error) {
+			throw error;
+		} catch (Throwable throwable) {
+			throw new UndeclaredThrowableException(throwable);
+		}
+	}
+
+	/**
+	 * Utility method to lookup a method of a proxied interface.
+	 * 
+	 * @param clazz
+	 *            class declaring or inheriting the method
+	 * @param name
+	 *            name of method
+	 * @param parameterTypes
+	 *            parameter types of method
+	 * @return method
+	 * @throws NoSuchMethodError
+	 *             if the method does not exist (anymore)
+	 */
+	protected static Method method(Class clazz, String name,
+			Class[] parameterTypes) {
+		try {
+			return clazz.getMethod(name, parameterTypes);
+		} catch (NoSuchMethodException ex) {
+			throw new NoSuchMethodError(ex.getMessage());
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import spin.Evaluator;
+import spin.Invocation;
+import spin.ProxyFactory;
+
+/**
+ * A factory of proxies utilizing classes generated at compile time by the
+ * {@link SpinProxyProcessor}. <br>
+ * A static proxy is used for an object if one of its interfaces is annotated
+ * with {@link SpinProxy} and all other interfaces of the object are
+ * superinterfaces of it. For all other objects proxies are created by a
+ * fallback factory.
+ */
+public class StaticProxyFactory extends ProxyFactory {
+
+	/**
+	 * The suffix of generated proxy classes.
+	 */
+	public static final String SUFFIX = "_SpinProxy";
+
+	/**
+	 * Static proxy types of wrapped classes.
+	 */
+	private static final ClassValue<StaticType> types = new ClassValue<StaticType>() {
+		protected StaticType computeValue(Class<?> clazz) {
+			return new StaticType(findConstructor(clazz));
+		}
+	};
+
+	private ProxyFactory fallback;
+
+	/**
+	 * Create a factory falling back to a {@link JDKProxyFactory}.
+	 */
+	public StaticProxyFactory() {
+		this(new JDKProxyFactory());
+	}
+
+	/**
+	 * Create a factory falling back to the given factory.
+	 * 
+	 * @param fallback
+	 *            factory for objects without static proxy
+	 */
+	public StaticProxyFactory(ProxyFactory fallback) {
+		if (fallback == null) {
+			throw new IllegalArgumentException("fallback must not be null");
+		}
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Get the factory for objects without static proxy.
+	 * 
+	 * @return fallback factory
+	 */
+	public ProxyFactory getFallback() {
+		return fallback;
+	}
+
+	/**
+	 * Local methods are added to the fallback factory too.
+	 */
+	public synchronized void addLocalMethod(Method method) {
+		super.addLocalMethod(method);
+
+		fallback.addLocalMethod(method);
+	}
+
+	/**
+	 * Local methods are removed from the fallback factory too.
+	 */
+	public synchronized void removeLocalMethod(Method method) {
+		super.removeLocalMethod(method);
+
+		fallback.removeLocalMethod(method);
+	}
+
+	public Object createProxy(Object object, Evaluator evaluator) {
+		Constructor constructor = types.get(object.getClass()).constructor;
+		if (constructor == null) {
+			return fallback.createProxy(object, evaluator);
+		}
+
+		try {
+			return constructor.newInstance(new Object[] { this, object,
+					evaluator });
+		} catch (InvocationTargetException ex) {
+			throw new Error(ex.getTargetException());
+		} catch (Exception ex) {
+			throw new Error(ex);
+		}
+	}
+
+	public boolean isProxy(Object object) {
+		if (object instanceof StaticProxy) {
+			return true;
+		}
+		return fallback.isProxy(object);
+	}
+
+	protected boolean areProxyEqual(Object proxy1, Object proxy2) {
+		if (proxy1 instanceof StaticProxy && proxy2 instanceof StaticProxy) {
+			return ((StaticProxy) proxy1).getObject().equals(
+					((StaticProxy) proxy2).getObject());
+		} else if (!(proxy1 instanceof StaticProxy)
+				&& !(proxy2 instanceof StaticProxy)) {
+			// let the fallback proxy compare
+			return proxy1.equals(proxy2);
+		}
+		return false;
+	}
+
+	/**
+	 * Evaluate an invocation on a static proxy.
+	 */
+	Object evaluate(Evaluator evaluator, Object proxy, Invocation invocation)
+			throws Throwable {
+		return evaluteInvocation(evaluator, proxy, invocation);
+	}
+
+	/**
+	 * Find the constructor of the static proxy for the given class.
+	 * 
+	 * @param clazz
+	 *            class to find static proxy for
+	 * @return constructor or <code>null</code> if no static proxy is
+	 *         available
+	 */
+	private static Constructor findConstructor(Class clazz) {
+		Class annotated = null;
+		for (Class current = clazz; current != null; current = current
+				.getSuperclass()) {
+			Class[] interfaces = current.getInterfaces();
+			for (int i = 0; i < interfaces.length; i++) {
+				if (interfaces[i].isAnnotationPresent(SpinProxy.class)
+						&& interfaces[i] != annotated) {
+					if (annotated != null) {
+						return null;
+					}
+					annotated = interfaces[i];
+				}
+			}
+		}
+		if (annotated == null) {
+			return null;
+		}
+
+		for (Class current = clazz; current != null; current = current
+				.getSuperclass()) {
+			Class[] interfaces = current.getInterfaces();
+			for (int i = 0; i < interfaces.length; i++) {
+				if (!interfaces[i].isAssignableFrom(annotated)) {
+					return null;
+				}
+			}
+		}
+
+		try {
+			Class proxyClass = Class.forName(annotated.getName() + SUFFIX,
+					true, annotated.getClassLoader());
+
+			return proxyClass.getConstructor(new Class[] {
+					StaticProxyFactory.class, Object.class, Evaluator.class });
+		} catch (ClassNotFoundException notGenerated) {
+			return null;
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * The static proxy of a class.
+	 */
+	private static class StaticType {
+
+		private Constructor constructor;
+
+		public StaticType(Constructor constructor) {
+			this.constructor = constructor;
+		}
+	}
+}
@@ -18,6 +18,8 @@
  */
 package spin;
 
+import java.lang.reflect.Method;
+
 import junit.framework.TestCase;
 import spin.Evaluator;
 import spin.Invocation;
@@ -109,6 +111,117 @@ public abstract class AbstractProxyFactoryTest extends TestCase {
 				.equals(proxy2));
 	}
 
+	/**
+	 * Test local evaluation of methods of <code>Object</code>.
+	 */
+	public void testObjectMethodsLocal() {
+
+		Runnable runnable = new RunnableBean();
+
+		Runnable proxy = (Runnable) getFactory().createProxy(runnable,
+				createFailingEvaluator());
+
+		assertEquals(runnable.hashCode(), proxy.hashCode());
+		assertEquals(runnable.toString(), proxy.toString());
+	}
+
+	/**
+	 * Test local evaluation of a declared method.
+	 * 
+	 * @throws Exception
+	 */
+	public void testLocalMethod() throws Exception {
+
+		RunnableBean runnable = new RunnableBean();
+
+		ProxyFactory factory = getFactory();
+		factory.addLocalMethod(Runnable.class.getMethod("run", new Class[0]));
+
+		Runnable proxy = (Runnable) factory.createProxy(runnable,
+				createFailingEvaluator());
+
+		proxy.run();
+
+		assertEquals(true, runnable.run);
+	}
+
+	/**
+	 * Test removal of a local method.
+	 * 
+	 * @throws Exception
+	 */
+	public void testRemovedLocalMethod() throws Exception {
+
+		RunnableBean runnable = new RunnableBean();
+
+		ProxyFactory factory = getFactory();
+		Method run = Runnable.class.getMethod("run", new Class[0]);
+		factory.addLocalMethod(run);
+		factory.removeLocalMethod(run);
+
+		final boolean[] evaluated = new boolean[1];
+		Runnable proxy = (Runnable) factory.createProxy(runnable,
+				new Evaluator() {
+					public void evaluate(Invocation invocation)
+							throws Throwable {
+						evaluated[0] = true;
+						invocation.evaluate();
+					}
+				});
+
+		proxy.run();
+
+		assertEquals(true, evaluated[0]);
+		assertEquals(true, runnable.run);
+	}
+
+	/**
+	 * Test the inline route.
+	 */
+	public void testInlineRoute() {
+
+		RoutedBean bean = new RoutedBean();
+
+		Routed proxy = (Routed) getFactory().createProxy(bean,
+				createFailingEvaluator());
+
+		assertEquals(1, proxy.inline());
+	}
+
+	/**
+	 * Interface with routed methods.
+	 */
+	public static interface Routed {
+
+		@spin.annotation.Inline
+		public int inline();
+
+		@spin.annotation.Over
+		public boolean over();
+	}
+
+	/**
+	 * Routed mock.
+	 */
+	public static class RoutedBean implements Routed {
+
+		public int inline() {
+			return 1;
+		}
+
+		public boolean over() {
+			return javax.swing.SwingUtilities.isEventDispatchThread();
+		}
+	}
+
+	private Evaluator createFailingEvaluator() {
+		return new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				fail("not local");
+			};
+		};
+	}
+
 	/**
 	 * Runnable mock.
 	 */
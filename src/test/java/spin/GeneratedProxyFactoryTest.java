@@ -0,0 +1,227 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+
+import spin.proxy.GeneratedProxyFactory;
+
+/**
+ * Test of generated proxies.
+ */
+public class GeneratedProxyFactoryTest extends AbstractProxyFactoryTest {
+
+	protected ProxyFactory getFactory() {
+		return new GeneratedProxyFactory();
+	}
+
+	/**
+	 * Test passing of primitives.
+	 */
+	public void testPrimitives() {
+		Primitives proxy = (Primitives) getFactory().createProxy(
+				new PrimitivesBean(), createEvaluator());
+
+		assertEquals(true, proxy.not(false));
+		assertEquals((byte) -3, proxy.negate((byte) 3));
+		assertEquals('b', proxy.next('a'));
+		assertEquals(5, proxy.add(1, 2L, 0.5f, 1.5d));
+		assertEquals(Long.MAX_VALUE, proxy.max(Long.MAX_VALUE, -1L));
+		assertEquals(1.5f, proxy.half(3.0f), 0.0f);
+		assertEquals(Math.PI, proxy.identity(Math.PI), 0.0d);
+		assertEquals("a1", proxy.concat("a", 1));
+	}
+
+	/**
+	 * Test arguments boxed on request of an evaluator.
+	 */
+	public void testBoxedArguments() {
+		Evaluator evaluator = new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				Object[] args = invocation.getArguments();
+				if (args.length == 2 && args[1] instanceof Integer) {
+					args[1] = new Integer(2);
+				}
+				invocation.evaluate();
+			}
+		};
+
+		Primitives proxy = (Primitives) getFactory().createProxy(
+				new PrimitivesBean(), evaluator);
+
+		assertEquals("a2", proxy.concat("a", 1));
+		assertEquals((byte) -3, proxy.negate((byte) 3));
+	}
+
+	/**
+	 * Test arguments boxed and changed to a wider type.
+	 */
+	public void testWidenedArguments() {
+		Evaluator evaluator = new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				Object[] args = invocation.getArguments();
+				if (args.length == 1 && args[0] instanceof Long) {
+					args[0] = new Integer(3);
+				}
+				invocation.evaluate();
+			}
+		};
+
+		Primitives proxy = (Primitives) getFactory().createProxy(
+				new PrimitivesBean(), evaluator);
+
+		assertEquals(5, proxy.add(1, 2L, 0.5f, 1.5d));
+		assertEquals(3.0f, proxy.half(6.0f), 0.0f);
+	}
+
+	/**
+	 * Test reuse of invocations evaluated after the proxy returned.
+	 */
+	public void testLaterEvaluation() {
+		final List<Invocation> pending = new ArrayList<Invocation>();
+		Evaluator evaluator = new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				pending.add(invocation);
+			}
+		};
+
+		CountingBean bean = new CountingBean();
+		Runnable proxy = (Runnable) getFactory().createProxy(bean, evaluator);
+
+		proxy.run();
+		pending.get(0).evaluate();
+		assertEquals(1, bean.count);
+
+		proxy.run();
+		assertSame(pending.get(0), pending.get(1));
+
+		proxy.run();
+		assertNotSame(pending.get(1), pending.get(2));
+
+		pending.get(2).evaluate();
+		pending.get(1).evaluate();
+		assertEquals(3, bean.count);
+	}
+
+	/**
+	 * Test throwables.
+	 */
+	public void testThrowable() {
+		Primitives proxy = (Primitives) getFactory().createProxy(
+				new PrimitivesBean(), createEvaluator());
+
+		try {
+			proxy.fail(new IOException());
+			fail();
+		} catch (IOException expected) {
+		}
+
+		try {
+			proxy.fail(new IllegalStateException());
+			fail();
+		} catch (IllegalStateException expected) {
+		} catch (IOException ex) {
+			fail();
+		}
+
+		proxy = (Primitives) getFactory().createProxy(new PrimitivesBean(),
+				new Evaluator() {
+					public void evaluate(Invocation invocation) {
+						invocation.setThrowable(new IOException());
+					}
+				});
+		try {
+			proxy.concat("a", 1);
+			fail();
+		} catch (UndeclaredThrowableException expected) {
+		}
+	}
+
+	public static interface Primitives {
+		public boolean not(boolean value);
+
+		public byte negate(byte value);
+
+		public char next(char value);
+
+		public int add(int value1, long value2, float value3, double value4);
+
+		public long max(long value1, long value2);
+
+		public float half(float value);
+
+		public double identity(double value);
+
+		public String concat(String value1, int value2);
+
+		public void fail(Exception exception) throws IOException;
+	}
+
+	public static class CountingBean implements Runnable {
+		public int count;
+
+		public void run() {
+			count++;
+		}
+	}
+
+	public static class PrimitivesBean implements Primitives {
+		public boolean not(boolean value) {
+			return !value;
+		}
+
+		public byte negate(byte value) {
+			return (byte) -value;
+		}
+
+		public char next(char value) {
+			return (char) (value + 1);
+		}
+
+		public int add(int value1, long value2, float value3, double value4) {
+			return (int) (value1 + value2 + value3 + value4);
+		}
+
+		public long max(long value1, long value2) {
+			return Math.max(value1, value2);
+		}
+
+		public float half(float value) {
+			return value / 2;
+		}
+
+		public double identity(double value) {
+			return value;
+		}
+
+		public String concat(String value1, int value2) {
+			return value1 + value2;
+		}
+
+		public void fail(Exception exception) throws IOException {
+			if (exception instanceof IOException) {
+				throw (IOException) exception;
+			}
+			throw (RuntimeException) exception;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of invocations.
+ */
+public class InvocationTest extends TestCase {
+
+	public static interface Calculator {
+		int add(int a, int b);
+
+		void fail(String message) throws Exception;
+
+		String concat(String... strings);
+	}
+
+	interface Hidden {
+		long get();
+	}
+
+	public static class CalculatorImpl implements Calculator, Hidden {
+		public int add(int a, int b) {
+			return a + b;
+		}
+
+		public void fail(String message) throws Exception {
+			throw new Exception(message);
+		}
+
+		public String concat(String... strings) {
+			StringBuffer buffer = new StringBuffer();
+			for (int s = 0; s < strings.length; s++) {
+				buffer.append(strings[s]);
+			}
+			return buffer.toString();
+		}
+
+		public long get() {
+			return 42;
+		}
+	}
+
+	public void testPrimitives() throws Throwable {
+		Invocation invocation = new Invocation(new CalculatorImpl(),
+				Calculator.class.getMethod("add", new Class[] { Integer.TYPE,
+						Integer.TYPE }), new Object[] { new Integer(1),
+						new Integer(2) });
+		invocation.evaluate();
+
+		assertEquals(new Integer(3), invocation.resultOrThrow());
+	}
+
+	public void testThrowable() throws Throwable {
+		Invocation invocation = new Invocation(new CalculatorImpl(),
+				Calculator.class.getMethod("fail",
+						new Class[] { String.class }),
+				new Object[] { "failed" });
+		invocation.evaluate();
+
+		assertNull(invocation.getResult());
+		assertEquals("failed", invocation.getThrowable().getMessage());
+	}
+
+	public void testVarArgs() throws Throwable {
+		Invocation invocation = new Invocation(new CalculatorImpl(),
+				Calculator.class.getMethod("concat",
+						new Class[] { String[].class }),
+				new Object[] { new String[] { "a", "b" } });
+		invocation.evaluate();
+
+		assertEquals("ab", invocation.resultOrThrow());
+	}
+
+	public void testNonPublic() throws Throwable {
+		Invocation invocation = new Invocation(new CalculatorImpl(),
+				Hidden.class.getMethod("get", new Class[0]), null);
+		invocation.evaluate();
+
+		assertEquals(new Long(42), invocation.resultOrThrow());
+	}
+
+	public void testIllegalArguments() throws Throwable {
+		Invocation invocation = new Invocation(new CalculatorImpl(),
+				Calculator.class.getMethod("add", new Class[] { Integer.TYPE,
+						Integer.TYPE }), new Object[] { "1", new Integer(2) });
+		invocation.evaluate();
+		assertTrue(invocation.getThrowable() instanceof IllegalArgumentException);
+
+		invocation = new Invocation(new CalculatorImpl(), Calculator.class
+				.getMethod("add", new Class[] { Integer.TYPE, Integer.TYPE }),
+				new Object[] { null, new Integer(2) });
+		invocation.evaluate();
+		assertTrue(invocation.getThrowable() instanceof IllegalArgumentException);
+
+		invocation = new Invocation(new CalculatorImpl(), Calculator.class
+				.getMethod("add", new Class[] { Integer.TYPE, Integer.TYPE }),
+				new Object[] { new Integer(2) });
+		invocation.evaluate();
+		assertTrue(invocation.getThrowable() instanceof IllegalArgumentException);
+
+		invocation = new Invocation("calculator", Calculator.class.getMethod(
+				"add", new Class[] { Integer.TYPE, Integer.TYPE }),
+				new Object[] { new Integer(1), new Integer(2) });
+		invocation.evaluate();
+		assertTrue(invocation.getThrowable() instanceof IllegalArgumentException);
+	}
+
+	public void testWidening() throws Throwable {
+		Invocation invocation = new Invocation(new CalculatorImpl(),
+				Calculator.class.getMethod("add", new Class[] { Integer.TYPE,
+						Integer.TYPE }), new Object[] { new Short((short) 1),
+						new Character('a') });
+		invocation.evaluate();
+
+		assertEquals(new Integer(98), invocation.resultOrThrow());
+	}
+
+	public void testMethodNotModified() throws Throwable {
+		Method method = Hidden.class.getMethod("get", new Class[0]);
+
+		Invocation invocation = new Invocation(new CalculatorImpl(), method,
+				null);
+		invocation.evaluate();
+
+		assertEquals(new Long(42), invocation.resultOrThrow());
+		assertFalse(method.isAccessible());
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.annotation.Async;
+
+public class SpinTest extends TestCase {
+
+	public void testCanonical() {
+		Runnable runnable = new AbstractProxyFactoryTest.RunnableBean();
+
+		Object proxy = Spin.over(runnable);
+
+		assertSame(proxy, Spin.over(runnable));
+		assertSame(proxy, new Spin(runnable, Spin.getDefaultOverEvaluator())
+				.getProxy());
+
+		assertNotSame(proxy, Spin.off(runnable));
+		assertNotSame(proxy, Spin.over(new AbstractProxyFactoryTest.RunnableBean()));
+	}
+
+	public void testCanonicalCollected() throws Exception {
+		Runnable runnable = new AbstractProxyFactoryTest.RunnableBean();
+
+		Spin.over(runnable);
+
+		WeakReference<Runnable> reference = new WeakReference<Runnable>(
+				runnable);
+		runnable = null;
+
+		for (int attempt = 0; attempt < 50 && reference.get() != null; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get());
+	}
+
+	public void testRouteOfClassMethod() throws Exception {
+		assertEquals(Route.INLINE, Route.of(AbstractProxyFactoryTest.RoutedBean.class
+				.getMethod("inline", new Class[0])));
+		assertEquals(Route.INLINE, Route.of(AbstractProxyFactoryTest.Routed.class
+				.getMethod("inline", new Class[0])));
+	}
+
+	public void testRoute() throws Exception {
+		AbstractProxyFactoryTest.Routed proxy = (AbstractProxyFactoryTest.Routed) new Spin(
+				new AbstractProxyFactoryTest.RoutedBean(), new Evaluator() {
+					public void evaluate(Invocation invocation) {
+						fail("not routed");
+					}
+				}).getProxy();
+
+		assertEquals(Route.OVER, Route.of(AbstractProxyFactoryTest.Routed.class
+				.getMethod("over", new Class[0])));
+		assertEquals(Route.DEFAULT, Route.of(Runnable.class.getMethod("run",
+				new Class[0])));
+
+		assertEquals(1, proxy.inline());
+		assertTrue(proxy.over());
+	}
+
+	public static interface Notifier {
+		@Async
+		void notifyLater();
+	}
+
+	public void testAsyncRouteOnEDT() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch evaluated = new CountDownLatch(1);
+		final Thread[] threads = new Thread[2];
+
+		final Notifier proxy = (Notifier) Spin.off(new Notifier() {
+			public void notifyLater() {
+				threads[1] = Thread.currentThread();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException ex) {
+				}
+				evaluated.countDown();
+			}
+		});
+
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				threads[0] = Thread.currentThread();
+
+				proxy.notifyLater();
+			}
+		});
+
+		// EDT returned before the evaluation finished
+		assertEquals(1, evaluated.getCount());
+
+		release.countDown();
+		assertTrue("not evaluated", evaluated.await(10, TimeUnit.SECONDS));
+		assertNotNull(threads[1]);
+		assertNotSame(threads[0], threads[1]);
+	}
+}
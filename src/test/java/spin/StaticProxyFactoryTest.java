@@ -0,0 +1,139 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import spin.proxy.StaticProxy;
+import spin.proxy.StaticProxyFactory;
+
+/**
+ * Test of static proxies.
+ */
+public class StaticProxyFactoryTest extends AbstractProxyFactoryTest {
+
+	protected ProxyFactory getFactory() {
+		return new StaticProxyFactory();
+	}
+
+	/**
+	 * Test a proxy generated by the annotation processor, discovered by the
+	 * compiler from the classpath.
+	 */
+	public void testGenerated() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			// no compiler available
+			return;
+		}
+
+		File directory = File.createTempFile("spin", "");
+		directory.delete();
+		directory.mkdirs();
+		try {
+			generated(compiler, directory);
+		} finally {
+			delete(directory);
+		}
+	}
+
+	private void generated(JavaCompiler compiler, File directory)
+			throws Exception {
+		File bean = write(directory, "Bean", "@spin.proxy.SpinProxy\n"
+				+ "public interface Bean<T extends Number> {\n"
+				+ "  T add(T value, int... values) throws java.io.IOException;\n"
+				+ "  void fail() throws Exception;\n"
+				+ "  public static class Impl implements Bean<Integer> {\n"
+				+ "    public Integer add(Integer value, int... values) {\n"
+				+ "      int sum = value.intValue();\n"
+				+ "      for (int v = 0; v < values.length; v++) sum += values[v];\n"
+				+ "      return Integer.valueOf(sum);\n"
+				+ "    }\n"
+				+ "    public void fail() throws Exception {\n"
+				+ "      throw new java.io.IOException();\n"
+				+ "    }\n"
+				+ "  }\n"
+				+ "}\n");
+
+		int result = compiler.run(null, null, null, new String[] {
+				"-classpath", System.getProperty("java.class.path"),
+				"-d", directory.getPath(), "-s", directory.getPath(),
+				bean.getPath() });
+		assertEquals(0, result);
+
+		ClassLoader loader = new URLClassLoader(new URL[] { directory.toURI()
+				.toURL() }, getClass().getClassLoader());
+		Object impl = loader.loadClass("Bean$Impl").newInstance();
+
+		final int[] evaluations = new int[1];
+		Object proxy = getFactory().createProxy(impl, new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				evaluations[0]++;
+				invocation.evaluate();
+			}
+		});
+		assertTrue(proxy instanceof StaticProxy);
+		assertEquals("Bean" + StaticProxyFactory.SUFFIX, proxy.getClass()
+				.getName());
+
+		Method add = loader.loadClass("Bean").getMethod("add",
+				new Class[] { Number.class, int[].class });
+		assertEquals(new Integer(6), add.invoke(proxy, new Object[] {
+				new Integer(1), new int[] { 2, 3 } }));
+		assertEquals(1, evaluations[0]);
+
+		try {
+			loader.loadClass("Bean").getMethod("fail", new Class[0]).invoke(
+					proxy, new Object[0]);
+			fail();
+		} catch (java.lang.reflect.InvocationTargetException expected) {
+			assertTrue(expected.getTargetException() instanceof IOException);
+		}
+
+		assertTrue(proxy.equals(getFactory().createProxy(impl,
+				createEvaluator())));
+	}
+
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (int f = 0; f < files.length; f++) {
+				delete(files[f]);
+			}
+		}
+		file.delete();
+	}
+
+	private File write(File directory, String name, String source)
+			throws IOException {
+		File file = new File(directory, name + ".java");
+		FileWriter writer = new FileWriter(file);
+		writer.write(source);
+		writer.close();
+		return file;
+	}
+}
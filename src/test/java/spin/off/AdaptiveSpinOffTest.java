@@ -0,0 +1,71 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.reflect.Method;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import spin.Spin;
+
+public class AdaptiveSpinOffTest extends TestCase {
+
+	public static interface Adaptive {
+		boolean isEDT(long millis);
+	}
+
+	public void testPromoteAndDemote() throws Exception {
+		final AdaptiveSpinOffEvaluator evaluator = new AdaptiveSpinOffEvaluator(
+				new SpinOffEvaluator(), 5 * 1000 * 1000);
+		final Adaptive proxy = (Adaptive) new Spin(new Adaptive() {
+			public boolean isEDT(long millis) {
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException ex) {
+				}
+				return SwingUtilities.isEventDispatchThread();
+			}
+		}, evaluator).getProxy();
+		final Method method = Adaptive.class.getMethod("isEDT",
+				new Class[] { Long.TYPE });
+
+		final boolean[] edt = new boolean[2];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				edt[0] = proxy.isEDT(0);
+
+				for (int i = 0; i < AdaptiveSpinOffEvaluator.WINDOW
+						* AdaptiveSpinOffEvaluator.PROMOTION_WINDOWS; i++) {
+					proxy.isEDT(0);
+				}
+				assertTrue(evaluator.isInline(method));
+				edt[1] = proxy.isEDT(0);
+
+				// slow inline evaluation demotes
+				proxy.isEDT(100);
+				assertFalse(evaluator.isInline(method));
+			}
+		});
+
+		assertFalse(edt[0]);
+		assertTrue(edt[1]);
+	}
+}
@@ -0,0 +1,251 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.beans.PropertyChangeEvent;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.Spin;
+import spin.annotation.Cached;
+
+public class CachingSpinOffTest extends TestCase {
+
+	public static interface Store {
+		@Cached
+		int get(String key);
+
+		@Cached(100)
+		int getExpiring(String key);
+
+		int getUncached(String key);
+
+		@Cached
+		CompletableFuture<Integer> load(String key);
+	}
+
+	private int loads;
+
+	private CompletableFuture<Integer> pending;
+
+	private Store target = new Store() {
+		public int get(String key) {
+			return ++loads;
+		}
+
+		public int getExpiring(String key) {
+			return ++loads;
+		}
+
+		public int getUncached(String key) {
+			return ++loads;
+		}
+
+		public CompletableFuture<Integer> load(String key) {
+			CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+			loads++;
+			if ("fail".equals(key)) {
+				future.completeExceptionally(new IllegalStateException());
+			} else if ("pending".equals(key)) {
+				pending = future;
+			} else {
+				future.complete(Integer.valueOf(loads));
+			}
+			return future;
+		}
+	};
+
+	private int dispatchers;
+
+	private CachingSpinOffEvaluator evaluator = new CachingSpinOffEvaluator(
+			new SpinOffEvaluator(new DispatcherFactory() {
+				public Dispatcher createDispatcher() {
+					dispatchers++;
+					return SpinOffEvaluator.getDefaultDispatcherFactory()
+							.createDispatcher();
+				}
+			}), 2);
+
+	private Store proxy = (Store) new Spin(target, evaluator).getProxy();
+
+	public void testHitOnEDT() throws Exception {
+		final int[] results = new int[4];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				results[0] = proxy.get("a");
+				results[1] = proxy.get("a");
+				results[2] = proxy.getUncached("a");
+				results[3] = proxy.getUncached("a");
+			}
+		});
+
+		assertEquals(1, results[0]);
+		assertEquals(1, results[1]);
+		assertEquals(2, results[2]);
+		assertEquals(3, results[3]);
+		assertEquals(3, dispatchers);
+		assertEquals(1, evaluator.getHitCount());
+		assertEquals(1, evaluator.getMissCount());
+	}
+
+	public void testLeastRecentlyUsedEvicted() throws Exception {
+		proxy.get("a");
+		proxy.get("b");
+		proxy.get("a");
+		proxy.get("c");
+		assertEquals(2, evaluator.getWeight());
+
+		assertEquals(1, proxy.get("a"));
+		assertEquals(4, proxy.get("b"));
+	}
+
+	public void testExpiry() throws Exception {
+		assertEquals(1, proxy.getExpiring("a"));
+		assertEquals(1, proxy.getExpiring("a"));
+
+		Thread.sleep(150);
+		assertEquals(2, proxy.getExpiring("a"));
+	}
+
+	public void testInvalidate() throws Exception {
+		assertEquals(1, proxy.get("a"));
+
+		evaluator.propertyChange(new PropertyChangeEvent(target, "a", null,
+				null));
+		assertEquals(2, proxy.get("a"));
+
+		evaluator.invalidateAll();
+		assertEquals(3, proxy.get("a"));
+		assertEquals(3, proxy.get("a"));
+	}
+
+	public void testFutureNotShared() throws Exception {
+		CompletableFuture<Integer> first = proxy.load("a");
+		CompletableFuture<Integer> second = proxy.load("a");
+		assertNotSame(first, second);
+		assertEquals(1, second.get().intValue());
+
+		second.cancel(true);
+		assertEquals(1, proxy.load("a").get().intValue());
+		assertEquals(1, loads);
+	}
+
+	public void testFailedFutureNotCached() throws Exception {
+		try {
+			proxy.load("fail").get();
+			fail();
+		} catch (ExecutionException expected) {
+		}
+		try {
+			proxy.load("fail").get();
+			fail();
+		} catch (ExecutionException expected) {
+		}
+		assertEquals(2, loads);
+	}
+
+	public void testPendingFutureNotCached() throws Exception {
+		CompletableFuture<Integer> first = proxy.load("pending");
+		proxy.load("pending");
+		assertEquals(2, loads);
+
+		// completion of the first caches its value
+		first.complete(Integer.valueOf(42));
+		assertEquals(42, proxy.load("pending").get().intValue());
+		assertEquals(2, loads);
+	}
+
+	public void testInvalidateOtherTargetWhileEvaluating() throws Exception {
+		final Object other = new Object();
+		Store invalidating = (Store) new Spin(new Store() {
+			public int get(String key) {
+				evaluator.invalidate(other);
+				return ++loads;
+			}
+
+			public int getExpiring(String key) {
+				return ++loads;
+			}
+
+			public int getUncached(String key) {
+				return ++loads;
+			}
+
+			public CompletableFuture<Integer> load(String key) {
+				return null;
+			}
+		}, evaluator).getProxy();
+
+		assertEquals(1, invalidating.get("a"));
+		assertEquals(1, invalidating.get("a"));
+	}
+
+	public void testOversizedNotCached() throws Exception {
+		evaluator = new CachingSpinOffEvaluator(new SpinOffEvaluator(), 2) {
+			protected long weigh(Object result) {
+				return ((Integer) result).intValue() == 3 ? 3 : 1;
+			}
+		};
+		proxy = (Store) new Spin(target, evaluator).getProxy();
+
+		proxy.get("a");
+		proxy.get("b");
+		assertEquals(3, proxy.get("c"));
+		assertEquals(2, evaluator.getWeight());
+
+		assertEquals(1, proxy.get("a"));
+		assertEquals(2, proxy.get("b"));
+		assertEquals(4, proxy.get("c"));
+	}
+
+	public void testTargetNotRetained() throws Exception {
+		Store store = new Store() {
+			public int get(String key) {
+				return 1;
+			}
+
+			public int getExpiring(String key) {
+				return 1;
+			}
+
+			public int getUncached(String key) {
+				return 1;
+			}
+
+			public CompletableFuture<Integer> load(String key) {
+				return null;
+			}
+		};
+		((Store) new Spin(store, evaluator).getProxy()).get("a");
+		assertEquals(1, evaluator.getWeight());
+
+		WeakReference<Store> reference = new WeakReference<Store>(store);
+		store = null;
+
+		for (int attempt = 0; attempt < 50 && reference.get() != null; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get());
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.Spin;
+import spin.annotation.Forget;
+
+public class FireAndForgetSpinOffTest extends TestCase {
+
+	private static final int COUNT = 10;
+
+	public static interface Failing {
+		@Forget
+		void fail();
+
+		void failAndWait();
+	}
+
+	public void testForgetInOrder() throws Exception {
+		final SerialSpinOffTest.CounterImpl target = new SerialSpinOffTest.CounterImpl();
+
+		final SerialSpinOffTest.Counter proxy = (SerialSpinOffTest.Counter) new Spin(
+				target, new FireAndForgetSpinOffEvaluator(true)).getProxy();
+
+		final long[] elapsed = new long[1];
+		final int[] count = new int[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				long start = System.currentTimeMillis();
+				for (int i = 0; i < COUNT; i++) {
+					proxy.increment();
+				}
+				elapsed[0] = System.currentTimeMillis() - start;
+
+				// waits for all increments
+				count[0] = proxy.getCount();
+			}
+		});
+
+		assertTrue("EDT waited " + elapsed[0], elapsed[0] < COUNT * 10);
+		assertEquals(COUNT, count[0]);
+		assertEquals(1, target.maxConcurrent);
+	}
+
+	public void testExceptionHandler() throws Exception {
+		final CompletableFuture<Throwable> handled = new CompletableFuture<Throwable>();
+		FireAndForgetSpinOffEvaluator evaluator = new FireAndForgetSpinOffEvaluator();
+		evaluator.setExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			public void uncaughtException(Thread thread, Throwable throwable) {
+				handled.complete(throwable);
+			}
+		});
+
+		final Failing proxy = (Failing) new Spin(new Failing() {
+			public void fail() {
+				throw new IllegalStateException();
+			}
+
+			public void failAndWait() {
+				throw new IllegalArgumentException();
+			}
+		}, evaluator).getProxy();
+
+		final Throwable[] thrown = new Throwable[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				proxy.fail();
+
+				try {
+					proxy.failAndWait();
+				} catch (Throwable throwable) {
+					thrown[0] = throwable;
+				}
+			}
+		});
+
+		assertTrue(handled.get(10, TimeUnit.SECONDS) instanceof IllegalStateException);
+		assertTrue(thrown[0] instanceof IllegalArgumentException);
+	}
+
+	public void testThrowingExceptionHandler() throws Exception {
+		final List<Thread> threads = Collections
+				.synchronizedList(new ArrayList<Thread>());
+		final List<Throwable> escaped = Collections
+				.synchronizedList(new ArrayList<Throwable>());
+		Starter starter = new Starter() {
+			public void start(Runnable runnable) {
+				Thread thread = new Thread(runnable);
+				thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+					public void uncaughtException(Thread thread,
+							Throwable throwable) {
+						escaped.add(throwable);
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+		};
+
+		final CountDownLatch handled = new CountDownLatch(2);
+		FireAndForgetSpinOffEvaluator evaluator = new FireAndForgetSpinOffEvaluator(
+				SpinOffEvaluator.getDefaultDispatcherFactory(), starter,
+				FireAndForgetSpinOffEvaluator.DEFAULT_BATCH_SIZE, false);
+		evaluator.setExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			public void uncaughtException(Thread thread, Throwable throwable) {
+				handled.countDown();
+
+				throw new IllegalStateException("handler failed");
+			}
+		});
+
+		final Failing proxy = (Failing) new Spin(new Failing() {
+			public void fail() {
+				throw new IllegalStateException();
+			}
+
+			public void failAndWait() {
+				throw new IllegalArgumentException();
+			}
+		}, evaluator).getProxy();
+
+		final Throwable[] thrown = new Throwable[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				proxy.fail();
+				proxy.fail();
+
+				try {
+					proxy.failAndWait();
+				} catch (Throwable throwable) {
+					thrown[0] = throwable;
+				}
+			}
+		});
+
+		assertTrue(handled.await(10, TimeUnit.SECONDS));
+		assertTrue(thrown[0] instanceof IllegalArgumentException);
+
+		Thread[] started = threads.toArray(new Thread[0]);
+		for (int t = 0; t < started.length; t++) {
+			started[t].join(10000);
+		}
+		assertTrue(escaped.toString(), escaped.isEmpty());
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class MailboxTest extends TestCase {
+
+	public void testThrowingRunnable() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		Mailbox mailbox = new Mailbox(new Starter() {
+			public void start(Runnable runnable) {
+				Thread thread = new Thread(runnable);
+				// keep the expected exception quiet
+				thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+					public void uncaughtException(Thread t, Throwable e) {
+					}
+				});
+				thread.start();
+			}
+		}, 16);
+
+		final CountDownLatch throwing = new CountDownLatch(1);
+		mailbox.start(new Runnable() {
+			public void run() {
+				try {
+					throwing.await();
+				} catch (InterruptedException e) {
+				}
+				throw new IllegalStateException();
+			}
+		});
+		mailbox.start(new Runnable() {
+			public void run() {
+				latch.countDown();
+			}
+		});
+		throwing.countDown();
+
+		assertTrue("stranded", latch.await(5, TimeUnit.SECONDS));
+	}
+
+	public void testSaturatedPool() throws Exception {
+		final PooledStarter starter = new PooledStarter(2, 2, 1000);
+
+		final int mailboxes = 4;
+		final int runnables = 5;
+		final CountDownLatch latch = new CountDownLatch(mailboxes * runnables);
+
+		Thread poster = new Thread() {
+			public void run() {
+				for (int m = 0; m < mailboxes; m++) {
+					Mailbox mailbox = new Mailbox(starter, 1);
+					for (int r = 0; r < runnables; r++) {
+						mailbox.start(new Runnable() {
+							public void run() {
+								try {
+									Thread.sleep(5);
+								} catch (InterruptedException e) {
+								}
+								latch.countDown();
+							}
+						});
+					}
+				}
+			}
+		};
+		poster.setDaemon(true);
+		poster.start();
+
+		assertTrue("deadlocked with " + latch.getCount() + " runnables left",
+				latch.await(10, TimeUnit.SECONDS));
+
+		starter.shutdown();
+	}
+}
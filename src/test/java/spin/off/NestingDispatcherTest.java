@@ -0,0 +1,88 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.Spin;
+
+public class NestingDispatcherTest extends TestCase {
+
+	public static interface Delayed {
+		int delay(int millis);
+	}
+
+	public void testNested() throws Exception {
+		final NestingDispatcherFactory factory = new NestingDispatcherFactory(
+				new SecondaryLoopDispatcherFactory(), 2);
+
+		final Delayed proxy = (Delayed) new Spin(new Delayed() {
+			public int delay(int millis) {
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+				}
+				return millis;
+			}
+		}, new SpinOffEvaluator(factory)).getProxy();
+
+		final int[] results = new int[3];
+		final int[] depths = new int[2];
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						depths[0] = factory.getDepth();
+
+						SwingUtilities.invokeLater(new Runnable() {
+							public void run() {
+								depths[1] = factory.getDepth();
+
+								// exceeds maximum depth
+								results[2] = proxy.delay(10);
+							}
+						});
+
+						results[1] = proxy.delay(300);
+					}
+				});
+
+				// completes before the nested invocation
+				results[0] = proxy.delay(100);
+			}
+		});
+
+		Thread.sleep(1000);
+
+		final int[] after = new int[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				after[0] = factory.getDepth();
+			}
+		});
+
+		assertEquals(100, results[0]);
+		assertEquals(300, results[1]);
+		assertEquals(10, results[2]);
+		assertEquals(1, depths[0]);
+		assertEquals(2, depths[1]);
+		assertEquals(0, after[0]);
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import junit.framework.TestCase;
+
+public class PooledStarterTest extends TestCase {
+
+	private static final int COUNT = 20;
+
+	public void testBounded() throws Exception {
+		PooledStarter starter = new PooledStarter(0, 2, 1000);
+
+		final Object lock = new Object();
+		final int[] finished = new int[1];
+		final boolean[] named = new boolean[] { true };
+
+		for (int i = 0; i < COUNT; i++) {
+			starter.start(new Runnable() {
+				public void run() {
+					try {
+						Thread.sleep(10);
+					} catch (InterruptedException e) {
+					}
+					synchronized (lock) {
+						if (!Thread.currentThread().getName().startsWith("Spin-")) {
+							named[0] = false;
+						}
+						finished[0]++;
+						lock.notifyAll();
+					}
+				}
+			});
+
+			assertTrue("too many threads", starter.getPoolSize() <= 2);
+		}
+
+		long deadline = System.currentTimeMillis() + 5000;
+		synchronized (lock) {
+			while (finished[0] < COUNT) {
+				long remaining = deadline - System.currentTimeMillis();
+				assertTrue("tasks lost: " + (COUNT - finished[0]),
+						remaining > 0);
+				lock.wait(remaining);
+			}
+		}
+		assertTrue("unnamed thread", named[0]);
+
+		starter.shutdown();
+	}
+
+	public void testQueueLimit() throws Exception {
+		PooledStarter starter = new PooledStarter(1, 1, 1000, 1,
+				PooledStarter.QUEUE_LIMIT);
+
+		final Object lock = new Object();
+		Runnable blocking = new Runnable() {
+			public void run() {
+				synchronized (lock) {
+					try {
+						lock.wait(5000);
+					} catch (InterruptedException e) {
+					}
+				}
+			}
+		};
+
+		starter.start(blocking);
+		starter.start(blocking);
+		try {
+			starter.start(blocking);
+			fail("queue limit exceeded");
+		} catch (RejectedExecutionException expected) {
+		}
+
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+		starter.shutdown();
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+public class SecondaryLoopDispatcherTest extends TestCase {
+
+	public void test() throws Exception {
+		SecondaryLoopDispatcherFactory factory = new SecondaryLoopDispatcherFactory();
+
+		final Dispatcher dispatcher = factory.createDispatcher();
+
+		final boolean[] started = new boolean[1];
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				try {
+					started[0] = true;
+
+					dispatcher.start();
+				} catch (Throwable throwable) {
+					fail(throwable.getMessage());
+				}
+			}
+		});
+
+		Thread.sleep(2000);
+
+		dispatcher.stop();
+
+		final boolean[] dispatched = new boolean[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				dispatched[0] = true;
+			}
+		});
+		assertTrue(started[0]);
+		assertTrue(dispatched[0]);
+	}
+
+	public void testStopBeforeStart() throws Exception {
+		final SecondaryLoopDispatcherFactory factory = new SecondaryLoopDispatcherFactory();
+
+		final Throwable[] throwable = new Throwable[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				try {
+					for (int i = 0; i < 10; i++) {
+						Dispatcher dispatcher = factory.createDispatcher();
+
+						dispatcher.stop();
+
+						dispatcher.start();
+					}
+				} catch (Throwable ex) {
+					throwable[0] = ex;
+				}
+			}
+		});
+
+		assertNull(throwable[0]);
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.Spin;
+
+public class SerialSpinOffTest extends TestCase {
+
+	private static final int COUNT = 10;
+
+	public static interface Counter {
+		void increment();
+
+		int getCount();
+	}
+
+	public static class CounterImpl implements Counter {
+
+		public int count;
+
+		public int concurrent;
+
+		public int maxConcurrent;
+
+		public void increment() {
+			synchronized (this) {
+				concurrent++;
+				maxConcurrent = Math.max(concurrent, maxConcurrent);
+			}
+
+			int current = count;
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+			}
+			count = current + 1;
+
+			synchronized (this) {
+				concurrent--;
+			}
+		}
+
+		public int getCount() {
+			return count;
+		}
+	}
+
+	public void testSerialized() throws Exception {
+		CounterImpl target = new CounterImpl();
+
+		final Counter proxy = (Counter) new Spin(target,
+				new SerialSpinOffEvaluator()).getProxy();
+
+		Thread[] threads = new Thread[COUNT];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					proxy.increment();
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+
+		assertEquals(COUNT, target.count);
+		assertEquals(1, target.maxConcurrent);
+	}
+
+	public void testSerializedOnEDT() throws Exception {
+		final CounterImpl target = new CounterImpl();
+
+		final Counter proxy = (Counter) new Spin(target,
+				new SerialSpinOffEvaluator()).getProxy();
+
+		final int[] count = new int[1];
+		for (int i = 0; i < COUNT; i++) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					proxy.increment();
+				}
+			});
+		}
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				count[0] = proxy.getCount();
+			}
+		});
+
+		assertEquals(COUNT, count[0]);
+		assertEquals(1, target.maxConcurrent);
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.Spin;
+
+public class SingleFlightSpinOffTest extends TestCase {
+
+	private static final int COUNT = 5;
+
+	public static interface Service {
+		String load(String key);
+	}
+
+	private AtomicInteger loads = new AtomicInteger();
+
+	private CountDownLatch latch = new CountDownLatch(1);
+
+	private Service service = new Service() {
+		public String load(String key) {
+			loads.incrementAndGet();
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+			}
+			if (key == null) {
+				throw new IllegalArgumentException();
+			}
+			return key + "!";
+		}
+	};
+
+	private SingleFlightSpinOffEvaluator evaluator = new SingleFlightSpinOffEvaluator();
+
+	private Service proxy = (Service) new Spin(service, evaluator).getProxy();
+
+	public void testShared() throws Exception {
+		final String[] results = new String[COUNT];
+		Thread[] threads = new Thread[COUNT];
+		for (int t = 0; t < threads.length; t++) {
+			final int index = t;
+			threads[t] = new Thread() {
+				public void run() {
+					results[index] = proxy.load(index == 0 ? "b" : "a");
+				}
+			};
+			threads[t].start();
+		}
+		while (evaluator.getSharedCount() < COUNT - 2) {
+			Thread.sleep(10);
+		}
+
+		latch.countDown();
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+
+		assertEquals(2, loads.get());
+		assertEquals("b!", results[0]);
+		for (int t = 1; t < threads.length; t++) {
+			assertEquals("a!", results[t]);
+		}
+
+		// not in flight anymore
+		proxy.load("a");
+		assertEquals(3, loads.get());
+	}
+
+	public void testSharedException() throws Exception {
+		final Throwable[] thrown = new Throwable[COUNT];
+		Thread[] threads = new Thread[COUNT];
+		for (int t = 0; t < threads.length; t++) {
+			final int index = t;
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						proxy.load(null);
+					} catch (Throwable throwable) {
+						thrown[index] = throwable;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		while (evaluator.getSharedCount() < COUNT - 1) {
+			Thread.sleep(10);
+		}
+
+		latch.countDown();
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+			assertTrue(thrown[t] instanceof IllegalArgumentException);
+		}
+		assertEquals(1, loads.get());
+	}
+
+	public void testSharedOnEDT() throws Exception {
+		final String[] results = new String[2];
+		Thread leader = new Thread() {
+			public void run() {
+				results[0] = proxy.load("a");
+			}
+		};
+		leader.start();
+		while (loads.get() == 0) {
+			Thread.sleep(10);
+		}
+
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				// released while the EDT is dispatching
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						latch.countDown();
+					}
+				});
+
+				results[1] = proxy.load("a");
+			}
+		});
+		leader.join();
+
+		assertEquals(1, loads.get());
+		assertEquals("a!", results[0]);
+		assertEquals("a!", results[1]);
+	}
+}
@@ -18,11 +18,21 @@
  */
 package spin.off;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
 import javax.swing.SwingUtilities;
 
 import junit.framework.TestCase;
 
 import spin.Spin;
+import spin.annotation.Timeout;
 
 public class SpinOffTest extends TestCase {
 
@@ -44,6 +54,64 @@ public class SpinOffTest extends TestCase {
 		int getInt();
 	}
 
+	public static interface Loader {
+		CompletionStage<Integer> load(int value);
+	}
+
+	public static interface Hanging {
+		@Timeout(100)
+		void hang();
+
+		void hangLonger();
+	}
+
+	public static interface AsyncHanging {
+		@Timeout(100)
+		Future<Void> hangAsync();
+
+		Future<Void> hangAsyncLonger();
+	}
+
+	/**
+	 * Hangs until interrupted.
+	 */
+	public static class HangingBean implements Hanging, AsyncHanging {
+
+		public final CountDownLatch started = new CountDownLatch(1);
+
+		public final CountDownLatch interrupted;
+
+		/**
+		 * @param hangs
+		 *            number of expected interrupted hangs
+		 */
+		public HangingBean(int hangs) {
+			interrupted = new CountDownLatch(hangs);
+		}
+
+		public void hang() {
+			started.countDown();
+			try {
+				Thread.sleep(DELAY);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+		}
+
+		public void hangLonger() {
+			hang();
+		}
+
+		public Future<Void> hangAsync() {
+			hang();
+			return CompletableFuture.completedFuture(null);
+		}
+
+		public Future<Void> hangAsyncLonger() {
+			return hangAsync();
+		}
+	}
+
 	public void testEDTNotBlockedDuringInvocation() throws Exception {
 		class Flag {
 			public boolean flag1, flag2;
@@ -91,4 +159,305 @@ public class SpinOffTest extends TestCase {
 		assertNull("Unexpected exception in original invocation "
 				+ flag.exception, flag.exception);
 	}
+
+	public void testSpinBeforeDispatch() throws Exception {
+		final int[] dispatchers = new int[1];
+		DispatcherFactory factory = new DispatcherFactory() {
+			public Dispatcher createDispatcher() {
+				dispatchers[0]++;
+				return SpinOffEvaluator.getDefaultDispatcherFactory()
+						.createDispatcher();
+			}
+		};
+		SpinOffEvaluator evaluator = new SpinOffEvaluator(factory);
+		evaluator.setSpinTime(100 * 1000 * 1000);
+
+		final OneIntProperty proxy = (OneIntProperty) new Spin(
+				new OneIntProperty() {
+					public int getInt() {
+						return 1;
+					}
+				}, evaluator).getProxy();
+
+		final int[] sum = new int[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				for (int i = 0; i < 10; i++) {
+					sum[0] += proxy.getInt();
+				}
+			}
+		});
+
+		assertEquals(10, sum[0]);
+		assertTrue("dispatched short invocations", dispatchers[0] < 10);
+	}
+
+	public void testNoDispatcherAfterSpin() throws Exception {
+		final int[] dispatchers = new int[1];
+		DispatcherFactory factory = new DispatcherFactory() {
+			public Dispatcher createDispatcher() {
+				dispatchers[0]++;
+				return SpinOffEvaluator.getDefaultDispatcherFactory()
+						.createDispatcher();
+			}
+		};
+		// completes before the EDT starts to spin
+		Starter starter = new Starter() {
+			public void start(Runnable runnable) {
+				runnable.run();
+			}
+		};
+		SpinOffEvaluator evaluator = new SpinOffEvaluator(factory, starter);
+		evaluator.setSpinTime(100 * 1000 * 1000);
+
+		final OneIntProperty proxy = (OneIntProperty) new Spin(
+				new OneIntProperty() {
+					public int getInt() {
+						return 1;
+					}
+				}, evaluator).getProxy();
+
+		final int[] sum = new int[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				for (int i = 0; i < 10; i++) {
+					sum[0] += proxy.getInt();
+				}
+			}
+		});
+
+		assertEquals(10, sum[0]);
+		assertEquals(0, dispatchers[0]);
+	}
+
+	public void testAsync() throws Exception {
+		final int[] dispatchers = new int[1];
+		DispatcherFactory factory = new DispatcherFactory() {
+			public Dispatcher createDispatcher() {
+				dispatchers[0]++;
+				return SpinOffEvaluator.getDefaultDispatcherFactory()
+						.createDispatcher();
+			}
+		};
+
+		final Loader proxy = (Loader) new Spin(new Loader() {
+			public CompletionStage<Integer> load(int value) {
+				assertFalse(SwingUtilities.isEventDispatchThread());
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+				}
+				return CompletableFuture.completedFuture(Integer.valueOf(value));
+			}
+		}, new SpinOffEvaluator(factory)).getProxy();
+
+		final CompletableFuture<Boolean> callback = new CompletableFuture<Boolean>();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				CompletionStage<Integer> stage = proxy.load(42);
+				assertFalse(stage.toCompletableFuture().isDone());
+
+				stage.thenAccept(new Consumer<Integer>() {
+					public void accept(Integer value) {
+						assertEquals(42, value.intValue());
+						callback.complete(Boolean.valueOf(SwingUtilities
+								.isEventDispatchThread()));
+					}
+				});
+			}
+		});
+
+		assertTrue("callback on EDT", callback.get(10, TimeUnit.SECONDS)
+				.booleanValue());
+		assertEquals(0, dispatchers[0]);
+	}
+
+	public void testTimeout() throws Exception {
+		SpinOffEvaluator evaluator = new SpinOffEvaluator();
+		evaluator.setTimeout(200);
+
+		HangingBean hanging = new HangingBean(2);
+		final Hanging proxy = (Hanging) new Spin(hanging, evaluator)
+				.getProxy();
+
+		final Throwable[] thrown = new Throwable[2];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				try {
+					proxy.hang();
+				} catch (Throwable t) {
+					thrown[0] = t;
+				}
+				try {
+					proxy.hangLonger();
+				} catch (Throwable t) {
+					thrown[1] = t;
+				}
+			}
+		});
+
+		assertEquals(100, ((SpinOffTimeoutException) thrown[0]).getTimeout());
+		assertEquals(200, ((SpinOffTimeoutException) thrown[1]).getTimeout());
+		assertTrue("worker not interrupted", hanging.interrupted.await(DELAY,
+				TimeUnit.MILLISECONDS));
+	}
+
+	public void testCancel() throws Exception {
+		final SpinOffEvaluator evaluator = new SpinOffEvaluator();
+
+		final HangingBean hanging = new HangingBean(1);
+		final Hanging proxy = (Hanging) new Spin(hanging, evaluator)
+				.getProxy();
+
+		final Throwable[] thrown = new Throwable[1];
+		final int[] cancelled = new int[1];
+		Timer timer = new Timer();
+		new Thread() {
+			public void run() {
+				try {
+					hanging.started.await();
+				} catch (InterruptedException e) {
+				}
+
+				// cancel from within the nested dispatching
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						cancelled[0] = evaluator.cancel();
+					}
+				});
+			}
+		}.start();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				try {
+					proxy.hangLonger();
+				} catch (Throwable t) {
+					thrown[0] = t;
+				}
+			}
+		});
+
+		assertTrue("cancel took too long", timer.elapsed() < DELAY);
+		assertEquals(1, cancelled[0]);
+		assertEquals(CancellationException.class, thrown[0].getClass());
+		assertTrue("worker not interrupted", hanging.interrupted.await(DELAY,
+				TimeUnit.MILLISECONDS));
+	}
+
+	public void testCancelWhileCreatingDispatcher() throws Exception {
+		final SpinOffEvaluator[] evaluator = new SpinOffEvaluator[1];
+		DispatcherFactory factory = new DispatcherFactory() {
+			public Dispatcher createDispatcher() {
+				// a concurrent cancellation wins
+				evaluator[0].cancel();
+
+				throw new IllegalStateException("no dispatcher");
+			}
+		};
+		evaluator[0] = new SpinOffEvaluator(factory);
+		evaluator[0].setSpinTime(1000 * 1000);
+
+		final HangingBean hanging = new HangingBean(1);
+		final Hanging proxy = (Hanging) new Spin(hanging, evaluator[0])
+				.getProxy();
+
+		final Throwable[] thrown = new Throwable[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				try {
+					proxy.hangLonger();
+				} catch (Throwable t) {
+					thrown[0] = t;
+				}
+			}
+		});
+
+		assertEquals(CancellationException.class, thrown[0].getClass());
+		assertEquals("invocation cancelled", thrown[0].getMessage());
+		assertTrue("worker not interrupted", hanging.interrupted.await(DELAY,
+				TimeUnit.MILLISECONDS));
+	}
+
+	public void testAsyncTimeout() throws Exception {
+		SpinOffEvaluator evaluator = new SpinOffEvaluator();
+
+		HangingBean hanging = new HangingBean(1);
+		final AsyncHanging proxy = (AsyncHanging) new Spin(hanging, evaluator)
+				.getProxy();
+
+		final CompletableFuture<Boolean> callback = new CompletableFuture<Boolean>();
+		final Future<?>[] future = new Future<?>[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				future[0] = proxy.hangAsync();
+
+				((CompletableFuture<?>) future[0])
+						.whenComplete(new BiConsumer<Object, Throwable>() {
+							public void accept(Object result,
+									Throwable throwable) {
+								callback.complete(Boolean.valueOf(SwingUtilities
+										.isEventDispatchThread()));
+							}
+						});
+			}
+		});
+
+		// a thread waiting on the future might run the callback
+		assertTrue("callback on EDT", callback.get(DELAY,
+				TimeUnit.MILLISECONDS).booleanValue());
+		try {
+			future[0].get();
+			fail();
+		} catch (SpinOffTimeoutException expected) {
+			assertEquals(100, expected.getTimeout());
+		}
+		assertTrue("worker not interrupted", hanging.interrupted.await(DELAY,
+				TimeUnit.MILLISECONDS));
+	}
+
+	public void testAsyncCancel() throws Exception {
+		final SpinOffEvaluator evaluator = new SpinOffEvaluator();
+
+		HangingBean hanging = new HangingBean(1);
+		final AsyncHanging proxy = (AsyncHanging) new Spin(hanging, evaluator)
+				.getProxy();
+
+		final Future<?>[] future = new Future<?>[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				future[0] = proxy.hangAsyncLonger();
+			}
+		});
+		hanging.started.await();
+
+		assertEquals(1, evaluator.cancel());
+		try {
+			future[0].get(DELAY, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (CancellationException expected) {
+		}
+		assertTrue("worker not interrupted", hanging.interrupted.await(DELAY,
+				TimeUnit.MILLISECONDS));
+		assertEquals(0, evaluator.cancel());
+	}
+
+	public void testAsyncFutureCancel() throws Exception {
+		SpinOffEvaluator evaluator = new SpinOffEvaluator();
+
+		HangingBean hanging = new HangingBean(1);
+		final AsyncHanging proxy = (AsyncHanging) new Spin(hanging, evaluator)
+				.getProxy();
+
+		final Future<?>[] future = new Future<?>[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				future[0] = proxy.hangAsyncLonger();
+			}
+		});
+		hanging.started.await();
+
+		assertTrue(future[0].cancel(true));
+		assertTrue("worker not interrupted", hanging.interrupted.await(DELAY,
+				TimeUnit.MILLISECONDS));
+	}
 }
@@ -0,0 +1,164 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import spin.Spin;
+import spin.over.BoundedSpinOverEvaluator.Policy;
+
+public class BoundedSpinOverTest extends TestCase {
+
+	private List<Integer> values = Collections
+			.synchronizedList(new ArrayList<Integer>());
+
+	private CountDownLatch latch = new CountDownLatch(1);
+
+	protected void setUp() throws Exception {
+		// block the EDT until released
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				try {
+					latch.await();
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		});
+	}
+
+	private CoalescingSpinOverTest.Sink sink(BoundedSpinOverEvaluator evaluator) {
+		return (CoalescingSpinOverTest.Sink) new Spin(
+				new CoalescingSpinOverTest.Sink() {
+					public void add(int value) {
+						values.add(Integer.valueOf(value));
+					}
+				}, evaluator).getProxy();
+	}
+
+	private void assertValues(int... expected) throws Exception {
+		latch.countDown();
+		while (values.size() < expected.length) {
+			Thread.sleep(10);
+		}
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+			}
+		});
+
+		assertEquals(expected.length, values.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], values.get(i).intValue());
+		}
+	}
+
+	public void testDropNewest() throws Exception {
+		BoundedSpinOverEvaluator evaluator = new BoundedSpinOverEvaluator(2,
+				Policy.DROP_NEWEST);
+		CoalescingSpinOverTest.Sink sink = sink(evaluator);
+		for (int i = 0; i < 5; i++) {
+			sink.add(i);
+		}
+
+		assertEquals(2, evaluator.getQueueDepth());
+		assertEquals(3, evaluator.getDroppedCount());
+		assertValues(0, 1);
+		assertEquals(0, evaluator.getQueueDepth());
+	}
+
+	public void testDropOldest() throws Exception {
+		BoundedSpinOverEvaluator evaluator = new BoundedSpinOverEvaluator(2,
+				Policy.DROP_OLDEST);
+		CoalescingSpinOverTest.Sink sink = sink(evaluator);
+		for (int i = 0; i < 5; i++) {
+			sink.add(i);
+		}
+
+		assertEquals(2, evaluator.getQueueDepth());
+		assertEquals(3, evaluator.getDroppedCount());
+		assertValues(3, 4);
+	}
+
+	public void testConflate() throws Exception {
+		BoundedSpinOverEvaluator evaluator = new BoundedSpinOverEvaluator(1,
+				Policy.CONFLATE);
+		CoalescingSpinOverTest.Sink sink = sink(evaluator);
+		for (int i = 0; i < 5; i++) {
+			sink.add(i);
+		}
+
+		assertEquals(1, evaluator.getQueueDepth());
+		assertEquals(4, evaluator.getSupersededCount());
+		assertEquals(0, evaluator.getDroppedCount());
+		assertValues(4);
+	}
+
+	public void testBlock() throws Exception {
+		BoundedSpinOverEvaluator evaluator = new BoundedSpinOverEvaluator(1,
+				Policy.BLOCK);
+		final CoalescingSpinOverTest.Sink sink = sink(evaluator);
+		Thread producer = new Thread() {
+			public void run() {
+				sink.add(0);
+				sink.add(1);
+			}
+		};
+		producer.start();
+
+		producer.join(200);
+		assertTrue(producer.isAlive());
+		assertEquals(1, evaluator.getQueueDepth());
+
+		assertValues(0, 1);
+		producer.join();
+	}
+
+	public void testFutureCancelled() throws Exception {
+		FutureSpinOverTest.Calculator calculator = (FutureSpinOverTest.Calculator) new Spin(
+				new FutureSpinOverTest.Calculator() {
+					public Future<Integer> square(int value) {
+						return null;
+					}
+
+					public CompletionStage<Integer> cube(int value) {
+						return null;
+					}
+
+					public CompletableFuture<Integer> fail() {
+						return null;
+					}
+				}, new BoundedSpinOverEvaluator(1, Policy.DROP_NEWEST))
+				.getProxy();
+
+		calculator.square(1);
+		assertTrue(calculator.square(2).isCancelled());
+
+		latch.countDown();
+	}
+}
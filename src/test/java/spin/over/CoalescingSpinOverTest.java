@@ -0,0 +1,135 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import spin.Invocation;
+import spin.Spin;
+
+public class CoalescingSpinOverTest extends TestCase {
+
+	public static interface Sink {
+		void add(int value);
+	}
+
+	public void testOrderedBatches() throws Exception {
+		final List<Integer> batches = Collections
+				.synchronizedList(new ArrayList<Integer>());
+		CoalescingSpinOverEvaluator evaluator = new CoalescingSpinOverEvaluator(
+				100) {
+			protected void onDrain(int batchSize) {
+				batches.add(Integer.valueOf(batchSize));
+			}
+		};
+
+		final List<Integer> values = Collections
+				.synchronizedList(new ArrayList<Integer>());
+		Sink sink = (Sink) new Spin(new Sink() {
+			public void add(int value) {
+				assertTrue(SwingUtilities.isEventDispatchThread());
+				values.add(Integer.valueOf(value));
+			}
+		}, evaluator).getProxy();
+
+		for (int i = 0; i < 1000; i++) {
+			sink.add(i);
+		}
+
+		awaitSize(values, 1000);
+		// let the last drain complete
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+			}
+		});
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, values.get(i).intValue());
+		}
+
+		int total = 0;
+		for (int b = 0; b < batches.size(); b++) {
+			int batchSize = batches.get(b).intValue();
+			assertTrue(batchSize <= 100);
+			total += batchSize;
+		}
+		assertEquals(1000, total);
+		assertTrue(batches.size() < 1000);
+	}
+
+	public void testThrowingInvocation() throws Exception {
+		final List<Throwable> reported = Collections
+				.synchronizedList(new ArrayList<Throwable>());
+		Thread.UncaughtExceptionHandler handler = Thread
+				.getDefaultUncaughtExceptionHandler();
+		Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			public void uncaughtException(Thread thread, Throwable throwable) {
+				reported.add(throwable);
+			}
+		});
+		try {
+			CoalescingSpinOverEvaluator evaluator = new CoalescingSpinOverEvaluator();
+
+			final List<Integer> values = Collections
+					.synchronizedList(new ArrayList<Integer>());
+			Sink sink = (Sink) new Spin(new Sink() {
+				public void add(int value) {
+					values.add(Integer.valueOf(value));
+				}
+			}, evaluator).getProxy();
+
+			evaluator.enqueue(new Invocation(null, null, null) {
+				public void evaluate() {
+					throw new IllegalStateException("failing invocation");
+				}
+			});
+			for (int i = 0; i < 10; i++) {
+				sink.add(i);
+			}
+			awaitSize(values, 10);
+
+			// drains are still scheduled after the failure
+			sink.add(10);
+			awaitSize(values, 11);
+
+			assertEquals(1, reported.size());
+			assertEquals("failing invocation", reported.get(0).getMessage());
+		} finally {
+			Thread.setDefaultUncaughtExceptionHandler(handler);
+		}
+	}
+
+	private void awaitSize(List<Integer> values, int size)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (values.size() < size) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("only " + values.size() + " of " + size
+						+ " invocations evaluated");
+			}
+			Thread.sleep(10);
+		}
+	}
+}
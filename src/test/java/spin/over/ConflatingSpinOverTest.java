@@ -0,0 +1,78 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import spin.Spin;
+
+public class ConflatingSpinOverTest extends TestCase {
+
+	public void testLastValueWins() throws Exception {
+		ConflatingSpinOverEvaluator evaluator = new ConflatingSpinOverEvaluator();
+
+		final List<String> changes = Collections
+				.synchronizedList(new ArrayList<String>());
+		PropertyChangeListener listener = (PropertyChangeListener) new Spin(
+				new PropertyChangeListener() {
+					public void propertyChange(PropertyChangeEvent evt) {
+						changes.add(evt.getPropertyName() + "="
+								+ evt.getNewValue());
+					}
+				}, evaluator).getProxy();
+
+		// block the EDT while producing
+		final CountDownLatch latch = new CountDownLatch(1);
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				try {
+					latch.await();
+				} catch (InterruptedException ex) {
+				}
+			}
+		});
+
+		for (int i = 0; i < 100; i++) {
+			listener.propertyChange(new PropertyChangeEvent(this, "value",
+					null, Integer.valueOf(i)));
+			listener.propertyChange(new PropertyChangeEvent(this, "status",
+					null, "status" + i));
+		}
+		latch.countDown();
+
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+			}
+		});
+
+		assertEquals(2, changes.size());
+		assertEquals("value=99", changes.get(0));
+		assertEquals("status=status99", changes.get(1));
+		assertEquals(198, evaluator.getSupersededCount());
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import spin.Spin;
+
+public class FrameSpinOverTest extends TestCase {
+
+	public static interface Counter {
+		int increment();
+	}
+
+	public void testWait() throws Exception {
+		Counter counter = (Counter) new Spin(new Counter() {
+			private int count;
+
+			public int increment() {
+				assertTrue(SwingUtilities.isEventDispatchThread());
+				return ++count;
+			}
+		}, new FrameSpinOverEvaluator(true, 100)).getProxy();
+
+		for (int i = 1; i <= 10; i++) {
+			assertEquals(i, counter.increment());
+		}
+	}
+
+	public void testInterrupted() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		final Counter counter = (Counter) new Spin(new Counter() {
+			public int increment() {
+				return count.incrementAndGet();
+			}
+		}, new FrameSpinOverEvaluator(true, 100)).getProxy();
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				try {
+					latch.await();
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		});
+
+		final Throwable[] thrown = new Throwable[1];
+		Thread worker = new Thread() {
+			public void run() {
+				try {
+					counter.increment();
+				} catch (Throwable throwable) {
+					thrown[0] = throwable;
+				}
+			}
+		};
+		worker.start();
+		Thread.sleep(100);
+		worker.interrupt();
+		worker.join();
+
+		latch.countDown();
+
+		// withdrawn invocation is skipped
+		assertEquals(1, counter.increment());
+
+		assertTrue(thrown[0] instanceof InterruptedException
+				|| thrown[0].getCause() instanceof InterruptedException);
+		assertEquals(1, count.get());
+	}
+
+	public void testCarryOver() throws Exception {
+		final List<Integer> values = Collections
+				.synchronizedList(new ArrayList<Integer>());
+		CoalescingSpinOverTest.Sink sink = (CoalescingSpinOverTest.Sink) new Spin(
+				new CoalescingSpinOverTest.Sink() {
+					public void add(int value) {
+						values.add(Integer.valueOf(value));
+					}
+				}, new FrameSpinOverEvaluator(false, 10, 1)).getProxy();
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 4; i++) {
+			sink.add(i);
+		}
+		while (values.size() < 4) {
+			Thread.sleep(10);
+		}
+
+		// one invocation per tick
+		assertTrue(System.currentTimeMillis() - start >= 300);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, values.get(i).intValue());
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import spin.Spin;
+
+public class FutureSpinOverTest extends TestCase {
+
+	public static interface Calculator {
+		Future<Integer> square(int value);
+
+		CompletionStage<Integer> cube(int value);
+
+		CompletableFuture<Integer> fail();
+	}
+
+	private CountDownLatch latch = new CountDownLatch(1);
+
+	private Calculator calculator = new Calculator() {
+		public Future<Integer> square(int value) {
+			assertTrue(SwingUtilities.isEventDispatchThread());
+			await();
+			return CompletableFuture.completedFuture(Integer.valueOf(value
+					* value));
+		}
+
+		public CompletionStage<Integer> cube(int value) {
+			assertTrue(SwingUtilities.isEventDispatchThread());
+			return CompletableFuture.completedFuture(Integer.valueOf(value
+					* value * value));
+		}
+
+		public CompletableFuture<Integer> fail() {
+			throw new IllegalStateException();
+		}
+	};
+
+	private void await() {
+		try {
+			latch.await();
+		} catch (InterruptedException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	public void testNoWait() throws Exception {
+		Calculator proxy = (Calculator) new Spin(calculator,
+				new SpinOverEvaluator(false)).getProxy();
+
+		Future<Integer> future = proxy.square(3);
+		assertFalse(future.isDone());
+
+		latch.countDown();
+		assertEquals(9, future.get(10, TimeUnit.SECONDS).intValue());
+		assertEquals(27, proxy.cube(3).toCompletableFuture().get(10,
+				TimeUnit.SECONDS).intValue());
+	}
+
+	public void testWaitReturnsImmediately() throws Exception {
+		Calculator proxy = (Calculator) new Spin(calculator,
+				new SpinOverEvaluator(true)).getProxy();
+
+		Future<Integer> future = proxy.square(4);
+		assertFalse(future.isDone());
+
+		latch.countDown();
+		assertEquals(16, future.get(10, TimeUnit.SECONDS).intValue());
+	}
+
+	public void testException() throws Exception {
+		Calculator proxy = (Calculator) new Spin(calculator,
+				new SpinOverEvaluator(false)).getProxy();
+
+		try {
+			proxy.fail().get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof IllegalStateException);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import spin.Spin;
+
+public class SpinOverTest extends TestCase {
+
+	public void testWait() throws Exception {
+		final FrameSpinOverTest.Counter counter = (FrameSpinOverTest.Counter) new Spin(
+				new FrameSpinOverTest.Counter() {
+					private int count;
+
+					public int increment() {
+						assertTrue(SwingUtilities.isEventDispatchThread());
+						return ++count;
+					}
+				}, new SpinOverEvaluator(true)).getProxy();
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					int last = 0;
+					for (int i = 0; i < 1000; i++) {
+						int count = counter.increment();
+						assertTrue(count > last);
+						last = count;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+
+		assertEquals(4001, counter.increment());
+	}
+
+	public void testInterrupted() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		final FrameSpinOverTest.Counter counter = (FrameSpinOverTest.Counter) new Spin(
+				new FrameSpinOverTest.Counter() {
+					public int increment() {
+						return count.incrementAndGet();
+					}
+				}, new SpinOverEvaluator(true)).getProxy();
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				try {
+					latch.await();
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		});
+
+		final Throwable[] thrown = new Throwable[1];
+		Thread worker = new Thread() {
+			public void run() {
+				try {
+					counter.increment();
+				} catch (Throwable throwable) {
+					thrown[0] = throwable;
+				}
+
+				// a new slot after interruption
+				counter.increment();
+			}
+		};
+		worker.start();
+		Thread.sleep(100);
+		worker.interrupt();
+		Thread.sleep(100);
+
+		latch.countDown();
+		worker.join();
+
+		assertTrue(thrown[0] instanceof InterruptedException
+				|| thrown[0].getCause() instanceof InterruptedException);
+		assertEquals(1, count.get());
+	}
+}